@@ -22,6 +22,7 @@ import score.annotation.External;
 import score.annotation.Optional;
 
 import java.math.BigInteger;
+import java.util.List;
 import java.util.Map;
 
 public interface AgoraGov {
@@ -45,6 +46,72 @@ public interface AgoraGov {
     @External
     void setMinimumThreshold(BigInteger _amount);
 
+    /**
+     * Returns the number of proposals a creator can have active at the same time.
+     *
+     * @return the maximum number of active proposals per creator, zero if unlimited
+     */
+    @External(readonly=true)
+    BigInteger maxActiveProposals();
+
+    /**
+     * Sets the number of proposals a creator can have active at the same time.
+     * Proposals already submitted are not affected.
+     * Admin-only method.
+     *
+     * @param _count the maximum number of active proposals per creator, zero for no limit
+     */
+    @External
+    void setMaxActiveProposals(BigInteger _count);
+
+    /**
+     * Returns the id of the network the signed votes are bound to.
+     *
+     * @return the network id, zero if it is not set
+     */
+    @External(readonly=true)
+    BigInteger networkId();
+
+    /**
+     * Sets the id of the network the signed votes are bound to, the `nid` of the ICON network
+     * the contract is deployed on (`0x1` on the MainNet).
+     * `submitSignedVotes` is rejected until it is set, and votes signed for a previous id no longer verify.
+     * Admin-only method.
+     *
+     * @param _nid the network id
+     */
+    @External
+    void setNetworkId(BigInteger _nid);
+
+    /**
+     * Returns the rules used to decide the outcome of a proposal.
+     *
+     * @return Map of quorum and passThreshold
+     */
+    @External(readonly=true)
+    Map<String, Object> getVotingRules();
+
+    /**
+     * Sets the rules used to decide the outcome of the proposals closed from now on.
+     * A proposal passes if the total of its votes, abstentions included, reaches the quorum
+     * and its for votes exceed the pass threshold of the for and against votes.
+     * Admin-only method.
+     *
+     * @param _quorum the minimum total voting power, zero for none
+     * @param _passThreshold the share of for votes to exceed, in basis points (5000 is a simple majority)
+     */
+    @External
+    void setVotingRules(BigInteger _quorum, BigInteger _passThreshold);
+
+    /**
+     * Moves the token settings and the minimum threshold into the packed configuration record,
+     * and clears the variables that used to hold them.
+     * Admin-only method, to be called once after upgrading a deployment that predates the record.
+     * The first call to one of the setters above migrates the settings the same way.
+     */
+    @External
+    void migrateConfig();
+
     /**
      * Creates a proposal.
      * The creator must meet the `minimumThreshold` to submit a governance proposal.
@@ -53,21 +120,131 @@ public interface AgoraGov {
      *
      * @param _endTime the timestamp of the end of the vote and must be minimum 1 day from `now` and maximum 7 days
      * @param _ipfsHash the hash of the content of the proposal, formatting is handled by the frontend
+     * @param _snapshotRoot (Optional) the Merkle root of a balance snapshot, see `MerkleProof`.
+     *                      If given, votes are cast with `voteWithProof` using the snapshot balances.
+     * @param _choices (Optional) the labels of the choices of a multi-choice proposal, between 2 and
+     *                 `Votes.MAX_CHOICES` of them. Its choices are named by their index, "0" for the first one.
+     *                 If omitted, the choices are for, against and abstain.
      */
     @External
-    void submitProposal(BigInteger _endTime, String _ipfsHash);
+    void submitProposal(BigInteger _endTime, String _ipfsHash, @Optional byte[] _snapshotRoot,
+                        @Optional String[] _choices);
 
     /**
      * Votes for a proposal.
      * All the voting power (got by using balancedOf against `tokenAddress`) is accounted for the _vote.
-     * The proposal has to be in `active` state.
+     * The proposal has to be in `active` state and its end time not reached.
+     * Voting again replaces the previous vote, with the current voting power.
+     * The vote also carries the balances delegated to the caller before the proposal was submitted,
+     * as they were when each delegation was made, except those of the delegators that vote on the proposal themselves.
      *
      * @param _proposalId id of the proposal
-     * @param _vote can be either for, against or abstain
+     * @param _vote can be either for, against or abstain, or the index of a choice of a multi-choice proposal
      */
     @External
     void vote(BigInteger _proposalId, String _vote);
 
+    /**
+     * Votes for a proposal by the index of the choice, as `vote` does.
+     * The choices of the for/against/abstain proposals are 0 for for, 1 for against and 2 for abstain.
+     *
+     * @param _proposalId id of the proposal
+     * @param _choice the index of the choice
+     */
+    @External
+    void voteChoice(BigInteger _proposalId, BigInteger _choice);
+
+    /**
+     * Votes for a snapshot proposal.
+     * The voting power is the balance of the caller in the snapshot, proven against the root of the proposal
+     * instead of being read from `tokenAddress`.
+     * The proposal has to be in `active` state.
+     *
+     * @param _proposalId id of the proposal
+     * @param _vote can be either for, against or abstain, or the index of a choice of a multi-choice proposal
+     * @param _power the balance of the caller in the snapshot
+     * @param _proof the sibling hashes from the leaf of the caller up to the root
+     */
+    @External
+    void voteWithProof(BigInteger _proposalId, String _vote, BigInteger _power, byte[][] _proof);
+
+    /**
+     * Applies a batch of votes signed off-chain by their voters.
+     * Anyone can relay the batch; each vote is subject to the same checks as `vote`,
+     * and the whole batch is reverted if any of them fails.
+     * Each voter signs (ecdsa-secp256k1, recoverable 65-byte form) the SHA3-256 hash of the RLP list
+     * `[score address, network id, proposal id, vote, nonce]`, where `network id` is the value of `networkId`,
+     * `vote` is the string passed in `_votes` and `nonce` is the value of `getVoteNonce` for the voter.
+     * The address is in its 21-byte form and the integers are big-endian two's complement, as written by RLPn.
+     * At most `MAX_BATCH_SIZE` votes can be relayed at once.
+     *
+     * @param _proposalIds id of the proposal of each vote
+     * @param _votes can be either for, against or abstain, or the index of a choice of a multi-choice proposal
+     * @param _nonces the nonce of each voter
+     * @param _signatures the signature of each vote
+     */
+    @External
+    void submitSignedVotes(BigInteger[] _proposalIds, String[] _votes, BigInteger[] _nonces, byte[][] _signatures);
+
+    /**
+     * Returns the current balances of holders in `tokenAddress`, which a vote would count as voting power.
+     * IRC-31 balances are read with a single `balanceOfBatch` call.
+     * At most `MAX_BATCH_SIZE` holders can be queried at once.
+     *
+     * @param _holders the holders
+     * @return List of the balances, in the order of `_holders`
+     */
+    @External(readonly=true)
+    List<BigInteger> getVotingPowers(Address[] _holders);
+
+    /**
+     * Delegates the voting power of the caller to another address.
+     * The current balance of the caller is added to the delegated power of `_to`,
+     * and moved out of its previous delegate if any. Delegating again to the same address
+     * updates the delegated balance.
+     * The delegation applies to the proposals submitted after it, other than snapshot proposals.
+     * A delegator can still vote on a proposal, which takes its balance out of its delegate's vote.
+     * The delegated balance is the balance of the caller at the time of the call and does not follow later
+     * transfers; a delegator whose balance changed delegates again to update it.
+     *
+     * @param _to the delegate
+     */
+    @External
+    void delegate(Address _to);
+
+    /**
+     * Withdraws the delegation of the caller, for the proposals submitted after it.
+     */
+    @External
+    void undelegate();
+
+    /**
+     * Returns the current delegation of a delegator.
+     *
+     * @param _delegator the delegator
+     * @return Map of delegate and delegated balance, empty if the delegator has no delegate
+     */
+    @External(readonly=true)
+    Map<String, Object> getDelegation(Address _delegator);
+
+    /**
+     * Returns the total balance currently delegated to an address.
+     *
+     * @param _delegate the delegate
+     * @return the delegated balance
+     */
+    @External(readonly=true)
+    BigInteger getDelegatedPower(Address _delegate);
+
+    /**
+     * Returns the nonce expected in the next signed vote of a voter.
+     *
+     * @param _voter the voter
+     * @return the next nonce
+     */
+    @External(readonly=true)
+    BigInteger getVoteNonce(Address _voter);
+
     /**
      * Cancels a proposal.
      * Possible only by the creator and if the proposal has been created in the past 3 hours.
@@ -88,6 +265,15 @@ public interface AgoraGov {
     @External
     void closeProposal(BigInteger _proposalId);
 
+    /**
+     * Closes up to `_limit` proposals whose end time has been reached, earliest end time first.
+     * Anyone can call it. Only proposals that have ended are visited, and at most `MAX_BATCH_SIZE` per call.
+     *
+     * @param _limit the maximum number of ended proposals to process
+     */
+    @External
+    void closeExpired(BigInteger _limit);
+
     /**
      * Returns the last proposal id.
      *
@@ -98,16 +284,165 @@ public interface AgoraGov {
 
     /**
      * Returns the object of the proposal.
+     * An active proposal whose end time has been reached is reported as `Closed` even before it is closed.
      *
      * @param _proposalId id of the proposal
-     * @return Map of proposalId, state, forVoices, againstVoices, abstainVoices, endTime, creator
+     * @return Map of proposalId, state, forVoices, againstVoices, abstainVoices, endTime, creator, snapshot, version.
+     *         Multi-choice proposals have their choice labels and tallies instead of the voices
      */
     @External(readonly=true)
     Map<String, Object> getProposal(BigInteger _proposalId);
 
+    /**
+     * Returns the versions of the given proposals, in the same order.
+     * The version of a proposal increases with every update stored: votes, cancellation and closing.
+     * It does not change when the end time passes, as nothing is stored until the proposal is closed.
+     * At most `MAX_PAGE_SIZE` ids are accepted per call.
+     *
+     * @param _ids ids of the proposals
+     * @return List of versions
+     */
+    @External(readonly=true)
+    List<BigInteger> getProposalVersions(BigInteger[] _ids);
+
+    /**
+     * Returns the outcome of a closed proposal, recorded when it was closed.
+     * For a proposal that has ended but is not closed yet, it is computed with the current rules.
+     *
+     * @param _proposalId id of the proposal
+     * @return Map of outcome (`Passed`, `Rejected` or `NoQuorum`), turnout, voters and margin (for minus against).
+     *         A multi-choice proposal is `Decided` by the choice with the most voting power, returned as the winner,
+     *         or `Tied`, and its margin is the lead over the runner-up
+     */
+    @External(readonly=true)
+    Map<String, Object> getResult(BigInteger _proposalId);
+
+    /**
+     * Returns the activity totals, kept up to date by every call so that reading them costs the same at any scale.
+     * The proposals are counted by their stored status: an ended proposal counts as active until it is closed,
+     * and proposals not yet visited by `indexProposals` are only counted in the total.
+     * The votes are counted since the totals were introduced.
+     *
+     * @return Map of the number of proposals, in total and by status, of votes cast (changed votes included),
+     *         of voters (summed over the proposals) and of the voting power in the tallies of all the proposals
+     */
+    @External(readonly=true)
+    Map<String, Object> getStats();
+
+    /**
+     * Returns the activity of a proposal.
+     *
+     * @param _proposalId id of the proposal
+     * @return Map of status, number of distinct voters, voting power in the tally and version
+     */
+    @External(readonly=true)
+    Map<String, Object> getProposalStats(BigInteger _proposalId);
+
+    /**
+     * Returns a page of proposals.
+     * Without `_status`, the proposals are returned in ascending id order.
+     * With `_status`, the page is taken from the index of that status, whose order is not stable
+     * across state changes.
+     * Proposals whose end time has passed are left out of the `active` page, which can then hold fewer entries
+     * than `_limit`, and are listed as `closed` once `closeProposal` or `closeExpired` has closed them.
+     * `getProposalCount` and `getProposalIds` still count them as active until then.
+     * At most `MAX_PAGE_SIZE` proposals are returned per call, whatever `_limit` is.
+     *
+     * @param _offset the number of proposals to skip
+     * @param _limit the maximum number of proposals to return
+     * @param _status (Optional) one of `active`, `closed` or `canceled`
+     * @return List of the proposal objects, in the format of `getProposal`
+     */
+    @External(readonly=true)
+    List<Map<String, Object>> getProposals(BigInteger _offset, BigInteger _limit, @Optional String _status);
+
+    /**
+     * Returns the number of proposals in a given status.
+     *
+     * @param _status one of `active`, `closed` or `canceled`
+     * @return the number of proposals
+     */
+    @External(readonly=true)
+    BigInteger getProposalCount(String _status);
+
+    /**
+     * Returns a page of the ids of the proposals in a given status.
+     * The order is not stable: a proposal leaving the status is replaced by the last id of the index.
+     * A proposal stays in the `active` index past its end time until it is closed.
+     * At most `MAX_PAGE_SIZE` ids are returned per call.
+     *
+     * @param _status one of `active`, `closed` or `canceled`
+     * @param _offset the number of ids to skip
+     * @param _limit the maximum number of ids to return
+     * @return List of proposal ids
+     */
+    @External(readonly=true)
+    List<BigInteger> getProposalIds(String _status, BigInteger _offset, BigInteger _limit);
+
+    /**
+     * Adds the proposals created before the status and creator indexes existed to them, in ascending id order.
+     * Admin-only method, to be called until it reaches `lastProposalId` after an upgrade.
+     *
+     * @param _limit the maximum number of proposals to index in this call
+     */
+    @External
+    void indexProposals(BigInteger _limit);
+
+    /**
+     * Rewrites the records stored in an earlier layout in the latest one, in ascending proposal id order:
+     * the proposal first, then the votes of its voters. Records are also upgraded whenever they are next written,
+     * so this only converts the ones that would otherwise stay in the old layout.
+     * Admin-only method, to be called until `getMigrationStatus` reports it complete. Fails once it is.
+     *
+     * @param _limit the maximum number of records to visit in this call, capped at `MAX_PAGE_SIZE`
+     */
+    @External
+    void migrateBatch(BigInteger _limit);
+
+    /**
+     * Returns the progress of `migrateBatch`.
+     *
+     * @return Map of the next proposal id to visit and whether all the proposals have been visited
+     */
+    @External(readonly=true)
+    Map<String, Object> getMigrationStatus();
+
+    /**
+     * Returns the number of proposals submitted by a creator.
+     *
+     * @param _creator the creator
+     * @return the number of proposals
+     */
+    @External(readonly=true)
+    BigInteger getCreatorProposalCount(Address _creator);
+
+    /**
+     * Returns a page of the ids of the proposals submitted by a creator, in submission order.
+     * At most `MAX_PAGE_SIZE` ids are returned per call.
+     *
+     * @param _creator the creator
+     * @param _offset the number of ids to skip
+     * @param _limit the maximum number of ids to return
+     * @return List of proposal ids
+     */
+    @External(readonly=true)
+    List<BigInteger> getCreatorProposalIds(Address _creator, BigInteger _offset, BigInteger _limit);
+
+    /**
+     * Returns the number of active proposals of a creator, which `maxActiveProposals` applies to.
+     * Proposals whose end time has passed are counted until they are closed.
+     *
+     * @param _creator the creator
+     * @return the number of active proposals
+     */
+    @External(readonly=true)
+    BigInteger getActiveProposalCount(Address _creator);
+
     /**
      * Returns the vote for a given user.
      *
+     * The map is empty if the user did not vote or once the votes of the proposal are archived.
+     *
      * @param _voter the voter
      * @param _proposalId id of the proposal
      * @return Map of vote and voting power
@@ -115,6 +450,120 @@ public interface AgoraGov {
     @External(readonly=true)
     Map<String, Object> getVote(Address _voter, BigInteger _proposalId);
 
+    /**
+     * Returns the votes of a user on several proposals, in the order of the ids.
+     * At most `MAX_PAGE_SIZE` ids are accepted per call.
+     *
+     * @param _voter the voter
+     * @param _proposalIds ids of the proposals
+     * @return List of Map of vote and voting power, empty where the user did not vote
+     */
+    @External(readonly=true)
+    List<Map<String, Object>> getVotes(Address _voter, BigInteger[] _proposalIds);
+
+    /**
+     * Returns the votes of several users on a proposal, in the order of the voters.
+     * At most `MAX_PAGE_SIZE` voters are accepted per call.
+     *
+     * @param _proposalId id of the proposal
+     * @param _voters the voters
+     * @return List of Map of vote and voting power, empty where the user did not vote
+     */
+    @External(readonly=true)
+    List<Map<String, Object>> getVotesFor(BigInteger _proposalId, Address[] _voters);
+
+    /**
+     * Returns, for each of the given proposals, its summary as returned by `getProposal`,
+     * the vote of the user as returned by `getVote`, and whether the user can vote on it now.
+     * A user can vote on an open proposal when it holds tokens or has delegated power on it;
+     * on an open snapshot proposal, the voting power is given by the proof.
+     * At most `MAX_PAGE_SIZE` ids are accepted per call.
+     *
+     * @param _voter the voter
+     * @param _proposalIds ids of the proposals
+     * @return List of Map of proposal, vote and eligibility
+     */
+    @External(readonly=true)
+    List<Map<String, Object>> getVoterDashboard(Address _voter, BigInteger[] _proposalIds);
+
+    /**
+     * Returns the number of voters of a proposal.
+     *
+     * @param _proposalId id of the proposal
+     * @return the number of voters
+     */
+    @External(readonly=true)
+    BigInteger getVoterCount(BigInteger _proposalId);
+
+    /**
+     * Returns a page of the voters of a proposal, in the order they voted.
+     * At most `MAX_PAGE_SIZE` voters are returned per call.
+     * Only the votes cast after the voter registry was introduced are listed.
+     * Fails once the archival of the votes has started.
+     *
+     * @param _proposalId id of the proposal
+     * @param _offset the number of voters to skip
+     * @param _limit the maximum number of voters to return
+     * @return List of Map of voter, vote and voting power
+     */
+    @External(readonly=true)
+    List<Map<String, Object>> getVoters(BigInteger _proposalId, BigInteger _offset, BigInteger _limit);
+
+    /**
+     * Returns a page of the whole state, for an indexer to start from without replaying the event logs.
+     * A page holds at most `MAX_EXPORT_SIZE` proposals and votes together; the first one also holds the configuration.
+     * Each proposal is a row of id, creator, stored status, start time, end time, content hash, for, against
+     * and abstain voices, number of voters and version, followed by the snapshot root of snapshot proposals.
+     * The rows of multi-choice proposals have their first three tallies in place of the voices, followed by
+     * the snapshot root (empty if none) and the whole tally.
+     * Each vote is a row of proposal id, voter, vote and voting power. The votes of a proposal follow it,
+     * except those cast before the voter registry was introduced and those already archived.
+     * Pages are read at different heights, so a client should compare the versions with `getProposalVersions`
+     * or apply the events emitted since the first page.
+     *
+     * @param _cursor the cursor returned with the previous page, omitted for the first page
+     * @return Map of proposal rows, vote rows, configuration (first page only) and cursor (absent on the last page)
+     */
+    @External(readonly=true)
+    Map<String, Object> exportState(@Optional byte[] _cursor);
+
+    /**
+     * Replaces the per-voter records of a closed or canceled proposal with the Merkle root of its votes.
+     * Only the owner can call it, since the records cannot be restored once deleted.
+     * The votes are added in the order of the voter registry, at most `MAX_BATCH_SIZE` per call,
+     * and deleted as they are added, along with the delegated balances taken out for the delegators among them.
+     * The root is kept once all of them are processed.
+     *
+     * @param _proposalId id of the proposal
+     * @param _limit the maximum number of votes to process
+     */
+    @External
+    void archiveVotes(BigInteger _proposalId, BigInteger _limit);
+
+    /**
+     * Returns the progress of the archival of the votes of a proposal.
+     *
+     * @param _proposalId id of the proposal
+     * @return Map of voters and archived counts, and root once complete; empty if the archival has not started
+     */
+    @External(readonly=true)
+    Map<String, Object> getVoteArchive(BigInteger _proposalId);
+
+    /**
+     * Checks that a vote is part of the archived votes of a proposal.
+     * The leaf is `sha3_256(0x02 || voter || choice || power)` with the choice as a single byte
+     * (0 for, 1 against, 2 abstain), and the tree is built like the snapshot trees.
+     *
+     * @param _proposalId id of the proposal
+     * @param _voter the voter
+     * @param _vote the choice
+     * @param _power the voting power
+     * @param _proof the sibling hashes from the leaf to the root
+     * @return true if the vote was archived
+     */
+    @External(readonly=true)
+    boolean verifyArchivedVote(BigInteger _proposalId, Address _voter, String _vote, BigInteger _power, byte[][] _proof);
+
     /**
      * Notifies the user that the proposal has been successfully submitted.
      *
@@ -139,4 +588,60 @@ public interface AgoraGov {
      */
     @EventLog(indexed=1)
     void ProposalClosed(BigInteger _proposalId);
+
+    /**
+     * Notifies the user that a vote has been cast.
+     * It is emitted for every vote, including the ones replacing a previous vote,
+     * and when a delegator voting takes its balance out of its delegate's vote,
+     * so the last event of a voter carries its current vote.
+     *
+     * @param _proposalId id of the proposal
+     * @param _voter the voter
+     * @param _vote the choice
+     * @param _power the voting power
+     */
+    @EventLog(indexed=2)
+    void VoteCast(BigInteger _proposalId, Address _voter, String _vote, BigInteger _power);
+
+    /**
+     * Notifies the user that the votes of a proposal have been archived.
+     *
+     * @param _proposalId id of the proposal
+     * @param _root the Merkle root of the votes
+     */
+    @EventLog(indexed=1)
+    void VotesArchived(BigInteger _proposalId, byte[] _root);
+
+    /**
+     * Notifies the user that a delegation has been made or updated.
+     *
+     * @param _delegator the delegator
+     * @param _delegate the delegate
+     * @param _amount the delegated balance
+     */
+    @EventLog(indexed=2)
+    void Delegated(Address _delegator, Address _delegate, BigInteger _amount);
+
+    /**
+     * Notifies the user that a delegation has been withdrawn.
+     *
+     * @param _delegator the delegator
+     * @param _delegate the former delegate
+     */
+    @EventLog(indexed=2)
+    void Undelegated(Address _delegator, Address _delegate);
+
+    /**
+     * Notifies the user that a voter has replaced its vote.
+     *
+     * @param _proposalId id of the proposal
+     * @param _voter the voter
+     * @param _oldVote the previous choice
+     * @param _oldPower the weight of the previous vote
+     * @param _newVote the new choice
+     * @param _newPower the weight of the new vote
+     */
+    @EventLog(indexed=2)
+    void VoteChanged(BigInteger _proposalId, Address _voter, String _oldVote, BigInteger _oldPower,
+                     String _newVote, BigInteger _newPower);
 }
@@ -26,6 +26,9 @@ import score.annotation.External;
 import score.annotation.Optional;
 
 import java.math.BigInteger;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
 import java.util.Map;
 
 public class AgoraImpl implements AgoraGov {
@@ -33,17 +36,56 @@ public class AgoraImpl implements AgoraGov {
     public static final BigInteger DAY_IN_SECONDS = HOUR_IN_SECONDS.multiply(BigInteger.valueOf(24));
     public static final BigInteger HOUR_IN_MICROSECONDS = HOUR_IN_SECONDS.multiply(BigInteger.valueOf(1_000_000));
     public static final BigInteger DAY_IN_MICROSECONDS = DAY_IN_SECONDS.multiply(BigInteger.valueOf(1_000_000));
+    public static final int MAX_PAGE_SIZE = 50;
+    public static final int MAX_BATCH_SIZE = 50;
+    // proposals and votes per page of `exportState`
+    public static final int MAX_EXPORT_SIZE = 200;
 
+    private final VarDB<GovernanceConfig> config = Context.newVarDB("config", GovernanceConfig.class);
+    // superseded by `config`, only read until `migrateConfig` is called
     private final VarDB<Address> tokenAddress = Context.newVarDB("token_address", Address.class);
     private final VarDB<String> tokenType = Context.newVarDB("token_type", String.class);
     private final VarDB<BigInteger> tokenId = Context.newVarDB("token_id", BigInteger.class);
     private final VarDB<BigInteger> minimumThreshold = Context.newVarDB("minimum_threshold", BigInteger.class);
 
     private final VarDB<BigInteger> proposalId = Context.newVarDB("proposal_id", BigInteger.class);
+    // hot part of the proposals: status, end time and tallies
+    private final DictDB<BigInteger, ProposalState> proposalStates = Context.newDictDB("proposal_state", ProposalState.class);
+    // cold part of the proposals: creator, start time and content hash
+    private final DictDB<BigInteger, ProposalInfo> proposalInfos = Context.newDictDB("proposal_info", ProposalInfo.class);
+    // proposals and tallies stored before the hot/cold split, moved out on their next update
     private final DictDB<BigInteger, Proposal> proposals = Context.newDictDB("proposals", Proposal.class);
+    private final DictDB<BigInteger, Votes> votes = Context.newDictDB("votes_sum", Votes.class);
+    // outcome of the proposals, written when they are closed
+    private final DictDB<BigInteger, ProposalResult> results = Context.newDictDB("proposal_result", ProposalResult.class);
     // proposalId => holder => token votes
     private final BranchDB<BigInteger, DictDB<Address, TokenVote>> tokenVotes = Context.newBranchDB("token_votes", TokenVote.class);
-    private final DictDB<BigInteger, Votes> votes = Context.newDictDB("votes_sum", Votes.class);
+    // proposalId => index => voter, in the order of the votes
+    private final BranchDB<BigInteger, DictDB<Integer, Address>> voters = Context.newBranchDB("voters", Address.class);
+    private final DictDB<BigInteger, Integer> voterCount = Context.newDictDB("voter_count", Integer.class);
+    // Merkle root of the votes of the proposals whose voter records have been pruned
+    private final DictDB<BigInteger, VoteArchive> voteArchives = Context.newDictDB("vote_archive", VoteArchive.class);
+    // delegator => delegate and delegated balance over time
+    private final CheckpointHistory delegations = new CheckpointHistory("delegations");
+    // delegate => total balance delegated to it over time
+    private final CheckpointHistory delegatedPowers = new CheckpointHistory("delegated_powers");
+    // proposalId => delegate => delegated balance of the delegators that voted themselves
+    private final BranchDB<BigInteger, DictDB<Address, BigInteger>> delegationOverrides =
+            Context.newBranchDB("delegation_overrides", BigInteger.class);
+    // totals of the votes over all the proposals
+    private final VarDB<GovernanceStats> stats = Context.newVarDB("stats", GovernanceStats.class);
+    // voter => number of signed votes relayed so far
+    private final DictDB<Address, BigInteger> voteNonces = Context.newDictDB("vote_nonces", BigInteger.class);
+    private final IdIndex activeProposals = new IdIndex("active_proposals");
+    private final IdIndex closedProposals = new IdIndex("closed_proposals");
+    private final IdIndex canceledProposals = new IdIndex("canceled_proposals");
+    private final ExpiryQueue expiryQueue = new ExpiryQueue("expiry_queue");
+    // creator => number of its proposals in `activeProposals`
+    private final DictDB<Address, Integer> creatorActiveCount = Context.newDictDB("creator_active_count", Integer.class);
+    // the last proposal id visited by `indexProposals`
+    private final VarDB<BigInteger> indexedProposalId = Context.newVarDB("indexed_proposal_id", BigInteger.class);
+    // the next record visited by `migrateBatch`
+    private final VarDB<ProposalCursor> migrationCursor = Context.newVarDB("migration_cursor", ProposalCursor.class);
 
     @External(readonly=true)
     public String name() {
@@ -58,65 +100,134 @@ public class AgoraImpl implements AgoraGov {
         checkCallerOrThrow(Context.getOwner(), "OnlyOwner");
     }
 
+    private GovernanceConfig legacyConfig() {
+        return new GovernanceConfig(
+                tokenAddress.get(),
+                tokenType.get(),
+                tokenId.getOrDefault(BigInteger.ZERO),
+                minimumThreshold.getOrDefault(BigInteger.ZERO));
+    }
+
+    // Reads the whole configuration at once; callers keep it for the rest of the transaction.
+    private GovernanceConfig loadConfig() {
+        var cfg = config.get();
+        return cfg != null ? cfg : legacyConfig();
+    }
+
+    // Writes the configuration record; the first write also clears the legacy variables it replaces.
+    private void storeConfig(GovernanceConfig cfg) {
+        if (config.get() == null) {
+            tokenAddress.set(null);
+            tokenType.set(null);
+            tokenId.set(null);
+            minimumThreshold.set(null);
+        }
+        config.set(cfg);
+    }
+
+    @External
+    public void migrateConfig() {
+        onlyOwner();
+        Context.require(config.get() == null, "ConfigAlreadyMigrated");
+        storeConfig(legacyConfig());
+    }
+
     @External(readonly=true)
     public Map<String, Object> governanceTokenInfo() {
-        var type = tokenType();
+        var cfg = loadConfig();
+        var type = cfg.getTokenType();
         if (type == null) {
             return Map.of();
         }
         if (TokenProxy.IRC2.equals(type)) {
             return Map.of(
-                    "_address", tokenAddress(),
+                    "_address", cfg.getTokenAddress(),
                     "_type", type);
         } else {
             return Map.of(
-                    "_address", tokenAddress(),
+                    "_address", cfg.getTokenAddress(),
                     "_type", type,
-                    "_id", tokenId());
+                    "_id", cfg.getTokenId());
         }
     }
 
-    private Address tokenAddress() {
-        return tokenAddress.get();
-    }
-
-    private String tokenType() {
-        return tokenType.get();
-    }
-
-    private BigInteger tokenId() {
-        return tokenId.getOrDefault(BigInteger.ZERO);
-    }
-
     @External
     public void setGovernanceToken(Address _address, String _type, @Optional BigInteger _id) {
         onlyOwner();
-        Context.require(tokenAddress() == null, "GovernanceTokenAlreadySet");
+        var cfg = loadConfig();
+        Context.require(cfg.getTokenAddress() == null, "GovernanceTokenAlreadySet");
         var type = _type.toLowerCase();
         switch (type) {
             case TokenProxy.IRC2:
             case TokenProxy.IRC31:
-                tokenType.set(type);
                 break;
             default:
                 Context.revert("InvalidTokenType");
         }
-        tokenAddress.set(_address);
-        if (TokenProxy.IRC31.equals(type)) {
-            tokenId.set(_id);
-        }
+        var id = TokenProxy.IRC31.equals(type) && _id != null ? _id : BigInteger.ZERO;
+        cfg.setToken(_address, type, id);
+        storeConfig(cfg);
     }
 
     @External(readonly=true)
     public BigInteger minimumThreshold() {
-        return minimumThreshold.getOrDefault(BigInteger.ZERO);
+        return loadConfig().getMinimumThreshold();
     }
 
     @External
     public void setMinimumThreshold(BigInteger _amount) {
         onlyOwner();
         Context.require(_amount.signum() > 0, "Minimum threshold must be positive");
-        minimumThreshold.set(_amount);
+        var cfg = loadConfig();
+        cfg.setMinimumThreshold(_amount);
+        storeConfig(cfg);
+    }
+
+    @External(readonly=true)
+    public Map<String, Object> getVotingRules() {
+        var cfg = loadConfig();
+        return Map.of(
+                "_quorum", cfg.getQuorum(),
+                "_passThreshold", cfg.getPassThreshold());
+    }
+
+    @External
+    public void setVotingRules(BigInteger _quorum, BigInteger _passThreshold) {
+        onlyOwner();
+        Context.require(_quorum.signum() >= 0, "InvalidQuorum");
+        Context.require(_passThreshold.signum() >= 0
+                && _passThreshold.compareTo(BigInteger.valueOf(ProposalResult.BASIS_POINTS)) < 0, "InvalidPassThreshold");
+        var cfg = loadConfig();
+        cfg.setVotingRules(_quorum, _passThreshold.intValue());
+        storeConfig(cfg);
+    }
+
+    @External(readonly=true)
+    public BigInteger maxActiveProposals() {
+        return BigInteger.valueOf(loadConfig().getMaxActiveProposals());
+    }
+
+    @External
+    public void setMaxActiveProposals(BigInteger _count) {
+        onlyOwner();
+        Context.require(_count.signum() >= 0 && _count.bitLength() < 32, "InvalidCount");
+        var cfg = loadConfig();
+        cfg.setMaxActiveProposals(_count.intValue());
+        storeConfig(cfg);
+    }
+
+    @External(readonly=true)
+    public BigInteger networkId() {
+        return loadConfig().getNetworkId();
+    }
+
+    @External
+    public void setNetworkId(BigInteger _nid) {
+        onlyOwner();
+        Context.require(_nid.signum() > 0, "InvalidNetworkId");
+        var cfg = loadConfig();
+        cfg.setNetworkId(_nid);
+        storeConfig(cfg);
     }
 
     @External(readonly=true)
@@ -130,6 +241,48 @@ public class AgoraImpl implements AgoraGov {
         Context.require(_endTime.longValue() > now + minimumEnd, "InvalidEndTime");
     }
 
+    private ProposalState loadState(BigInteger pid) {
+        var state = proposalStates.get(pid);
+        if (state == null) {
+            var pl = proposals.get(pid);
+            Context.require(pl != null, "InvalidProposalId");
+            state = ProposalState.fromLegacy(pl, votes.get(pid));
+        }
+        return state;
+    }
+
+    private void storeState(BigInteger pid, ProposalState state) {
+        state.bumpVersion();
+        writeState(pid, state);
+    }
+
+    // Stores the state in the latest layout, moving a proposal out of the legacy records.
+    private void writeState(BigInteger pid, ProposalState state) {
+        proposalStates.set(pid, state);
+        var legacy = state.getLegacy();
+        if (legacy != null) {
+            proposalInfos.set(pid, ProposalInfo.fromLegacy(legacy));
+            proposals.set(pid, null);
+            votes.set(pid, null);
+            state.clearLegacy();
+        }
+    }
+
+    private ProposalInfo loadInfo(BigInteger pid, ProposalState state) {
+        var legacy = state.getLegacy();
+        return legacy != null ? ProposalInfo.fromLegacy(legacy) : proposalInfos.get(pid);
+    }
+
+    // proposals of a creator, in submission order
+    private static IdIndex creatorIndex(Address creator) {
+        return new IdIndex("creator_proposals_" + creator);
+    }
+
+    private void changeActiveCount(Address creator, int delta) {
+        int count = creatorActiveCount.getOrDefault(creator, 0) + delta;
+        creatorActiveCount.set(creator, count > 0 ? count : null);
+    }
+
     private BigInteger getNextId() {
         BigInteger _id = lastProposalId();
         _id = _id.add(BigInteger.ONE);
@@ -138,114 +291,878 @@ public class AgoraImpl implements AgoraGov {
     }
 
     @External
-    public void submitProposal(BigInteger _endTime, String _ipfsHash) {
+    public void submitProposal(BigInteger _endTime, String _ipfsHash, @Optional byte[] _snapshotRoot,
+                               @Optional String[] _choices) {
         Address sender = Context.getCaller();
         Context.require(!sender.isContract(), "Only EOA can submit proposal");
         checkEndTimeOrThrow(_endTime);
 
-        var tokenProxy = new TokenProxy(tokenAddress(), tokenType(), tokenId());
-        var balance = tokenProxy.balanceOf(sender);
-        Context.require(minimumThreshold().compareTo(balance) <= 0, "MinimumThresholdNotMet");
+        var cfg = loadConfig();
+        var balance = cfg.tokenProxy().balanceOf(sender);
+        Context.require(cfg.getMinimumThreshold().compareTo(balance) <= 0, "MinimumThresholdNotMet");
+        int active = creatorActiveCount.getOrDefault(sender, 0);
+        int maxActive = cfg.getMaxActiveProposals();
+        Context.require(maxActive == 0 || active < maxActive, "TooManyActiveProposals");
 
         BigInteger pid = getNextId();
         long createTime = Context.getBlockTimestamp();
         long endTime = _endTime.longValue();
-        Proposal pl = new Proposal(sender, createTime, endTime, _ipfsHash, Proposal.STATUS_ACTIVE);
-        proposals.set(pid, pl);
+        if (_snapshotRoot != null) {
+            Context.require(_snapshotRoot.length == 32, "InvalidSnapshotRoot");
+        }
+        var tally = new Votes();
+        String[] choices = null;
+        if (_choices != null && _choices.length > 0) {
+            Context.require(_choices.length >= Votes.MIN_CHOICES && _choices.length <= Votes.MAX_CHOICES,
+                    "InvalidChoices");
+            for (String choice : _choices) {
+                Context.require(choice != null && !choice.isEmpty(), "InvalidChoices");
+            }
+            tally = new Votes(_choices.length);
+            choices = _choices;
+        }
+        proposalStates.set(pid, new ProposalState(Proposal.STATUS_ACTIVE, endTime, tally, _snapshotRoot));
+        proposalInfos.set(pid, new ProposalInfo(sender, createTime, _ipfsHash, choices));
+        activeProposals.add(pid);
+        expiryQueue.push(endTime, pid);
+        creatorIndex(sender).add(pid);
+        creatorActiveCount.set(sender, active + 1);
         ProposalSubmitted(pid, sender);
     }
 
+    // Delegations are taken as they were when the proposal was submitted,
+    // so that changing delegates during the vote does not count a balance twice.
+    private long delegationTime(BigInteger pid, ProposalState state) {
+        return loadInfo(pid, state).getStartTime();
+    }
+
+    // the balances delegated to `delegate`, less those of the delegators that voted themselves
+    private BigInteger delegatedPower(BigInteger pid, ProposalState state, Address delegate) {
+        // most voters have no delegators, which spares reading the proposal info
+        if (delegatedPowers.size(delegate) == 0) {
+            return BigInteger.ZERO;
+        }
+        return delegatedPower(pid, delegationTime(pid, state), delegate);
+    }
+
+    private BigInteger delegatedPower(BigInteger pid, long time, Address delegate) {
+        var checkpoint = delegatedPowers.before(delegate, time);
+        if (checkpoint == null) {
+            return BigInteger.ZERO;
+        }
+        return checkpoint.getAmount().subtract(delegationOverrides.at(pid).getOrDefault(delegate, BigInteger.ZERO));
+    }
+
+    // the delegation of `delegator` as it was at `time`, null if it had no delegate then
+    private Checkpoint delegationAt(Address delegator, long time) {
+        if (delegations.size(delegator) == 0) {
+            return null;
+        }
+        var checkpoint = delegations.before(delegator, time);
+        return checkpoint == null || checkpoint.getDelegate() == null ? null : checkpoint;
+    }
+
+    // Takes the delegated balance of a delegator that votes itself out of its delegate's vote, present or future.
+    private void overrideDelegation(BigInteger pid, ProposalState state, Address delegator) {
+        // most voters never delegated, which spares reading the proposal info
+        if (delegations.size(delegator) == 0) {
+            return;
+        }
+        var checkpoint = delegationAt(delegator, delegationTime(pid, state));
+        if (checkpoint == null) {
+            return;
+        }
+        var delegate = checkpoint.getDelegate();
+        var amount = checkpoint.getAmount();
+        var overrides = delegationOverrides.at(pid);
+        overrides.set(delegate, overrides.getOrDefault(delegate, BigInteger.ZERO).add(amount));
+
+        var proposalVotes = tokenVotes.at(pid);
+        var delegateVote = proposalVotes.get(delegate);
+        if (delegateVote != null) {
+            int choice = delegateVote.getChoice();
+            var power = delegateVote.getAmount().subtract(amount);
+            proposalVotes.set(delegate, new TokenVote(choice, power));
+            state.getVotes().decrease(choice, amount);
+            VoteCast(pid, delegate, state.getVotes().choiceName(choice), power);
+        }
+    }
+
+    private GovernanceStats loadStats() {
+        var s = stats.get();
+        return s != null ? s : new GovernanceStats();
+    }
+
+    // the choice named `vote` on the proposal: a preset name, or the index of the choice of a multi-choice proposal
+    private static int choiceOf(ProposalState state, String vote) {
+        int choice = state.getVotes().choiceIndex(vote.toLowerCase());
+        Context.require(choice >= 0, "InvalidVoteType");
+        return choice;
+    }
+
+    // Records the vote of `voter` and applies it to the in-memory tally and totals; the caller stores both.
+    // A voter who already voted has the previous vote replaced, by moving its weight out of the old choice.
+    // Except on snapshot proposals, the vote also carries the balances delegated to the voter.
+    private void castVote(BigInteger pid, ProposalState state, GovernanceStats totals, Address voter, int choice,
+                          BigInteger balance) {
+        var vs = state.getVotes();
+        var tallied = vs.getTotal();
+
+        var proposalVotes = tokenVotes.at(pid);
+        var previous = proposalVotes.get(voter);
+        if (state.getSnapshotRoot() == null) {
+            balance = balance.add(delegatedPower(pid, state, voter));
+            if (previous == null) {
+                overrideDelegation(pid, state, voter);
+            }
+        }
+        Context.require(balance.signum() > 0, "NotTokenHolder");
+        proposalVotes.set(voter, new TokenVote(choice, balance));
+        var name = vs.choiceName(choice);
+        if (previous == null) {
+            int count = voterCount.getOrDefault(pid, 0);
+            voters.at(pid).set(count, voter);
+            voterCount.set(pid, count + 1);
+        } else {
+            vs.decrease(previous.getChoice(), previous.getAmount());
+            VoteChanged(pid, voter, vs.choiceName(previous.getChoice()), previous.getAmount(), name, balance);
+        }
+        vs.increase(choice, balance);
+        totals.addVote(previous == null, vs.getTotal().subtract(tallied));
+        VoteCast(pid, voter, name, balance);
+    }
+
     @External
     public void vote(BigInteger _proposalId, String _vote) {
+        var state = loadBalanceVoteState(_proposalId);
+        castBalanceVote(_proposalId, state, choiceOf(state, _vote));
+    }
+
+    @External
+    public void voteChoice(BigInteger _proposalId, BigInteger _choice) {
+        var state = loadBalanceVoteState(_proposalId);
+        Context.require(_choice.signum() >= 0
+                && _choice.compareTo(BigInteger.valueOf(state.getVotes().getChoices())) < 0, "InvalidVoteType");
+        castBalanceVote(_proposalId, state, _choice.intValue());
+    }
+
+    // the state of a proposal the caller can vote on with its token balance
+    private ProposalState loadBalanceVoteState(BigInteger pid) {
         Address sender = Context.getCaller();
         Context.require(!sender.isContract(), "Only EOA can submit proposal");
 
-        Proposal pl = proposals.get(_proposalId);
-        Context.require(pl != null, "InvalidProposalId");
-        Context.require(pl.getStatus() == Proposal.STATUS_ACTIVE, "ProposalNotActive");
+        var state = loadState(pid);
+        Context.require(state.isOpen(Context.getBlockTimestamp()), "ProposalNotActive");
+        Context.require(state.getSnapshotRoot() == null, "SnapshotProofRequired");
+        return state;
+    }
 
-        var tokenProxy = new TokenProxy(tokenAddress(), tokenType(), tokenId());
-        var balance = tokenProxy.balanceOf(sender);
+    private void castBalanceVote(BigInteger pid, ProposalState state, int choice) {
+        Address sender = Context.getCaller();
+        var balance = loadConfig().tokenProxy().balanceOf(sender);
+        var totals = loadStats();
+        castVote(pid, state, totals, sender, choice, balance);
+        storeState(pid, state);
+        stats.set(totals);
+    }
+
+    @External
+    public void voteWithProof(BigInteger _proposalId, String _vote, BigInteger _power, byte[][] _proof) {
+        Address sender = Context.getCaller();
+        Context.require(!sender.isContract(), "Only EOA can submit proposal");
+
+        var state = loadState(_proposalId);
+        Context.require(state.isOpen(Context.getBlockTimestamp()), "ProposalNotActive");
+        var root = state.getSnapshotRoot();
+        Context.require(root != null, "NotSnapshotProposal");
+        Context.require(MerkleProof.verify(_proof, root, MerkleProof.leaf(sender, _power)), "InvalidProof");
+
+        var totals = loadStats();
+        castVote(_proposalId, state, totals, sender, choiceOf(state, _vote), _power);
+        storeState(_proposalId, state);
+        stats.set(totals);
+    }
+
+    private void changeDelegatedPower(Address delegate, BigInteger delta, long now) {
+        var current = delegatedPowers.latest(delegate);
+        var total = current == null ? delta : current.getAmount().add(delta);
+        delegatedPowers.push(delegate, new Checkpoint(now, null, total));
+    }
+
+    @External
+    public void delegate(Address _to) {
+        Address sender = Context.getCaller();
+        Context.require(!sender.isContract(), "Only EOA can delegate");
+        Context.require(!_to.equals(sender), "InvalidDelegate");
+        var balance = loadConfig().tokenProxy().balanceOf(sender);
         Context.require(balance.signum() > 0, "NotTokenHolder");
 
-        var vote = _vote.toLowerCase();
-        Context.require(Votes.isValid(vote), "InvalidVoteType");
+        long now = Context.getBlockTimestamp();
+        var current = delegations.latest(sender);
+        if (current != null && current.getDelegate() != null) {
+            changeDelegatedPower(current.getDelegate(), current.getAmount().negate(), now);
+        }
+        changeDelegatedPower(_to, balance, now);
+        delegations.push(sender, new Checkpoint(now, _to, balance));
+        Delegated(sender, _to, balance);
+    }
+
+    @External
+    public void undelegate() {
+        Address sender = Context.getCaller();
+        var current = delegations.latest(sender);
+        Context.require(current != null && current.getDelegate() != null, "NotDelegating");
+
+        long now = Context.getBlockTimestamp();
+        changeDelegatedPower(current.getDelegate(), current.getAmount().negate(), now);
+        delegations.push(sender, new Checkpoint(now, null, BigInteger.ZERO));
+        Undelegated(sender, current.getDelegate());
+    }
+
+    @External(readonly=true)
+    public Map<String, Object> getDelegation(Address _delegator) {
+        var current = delegations.latest(_delegator);
+        if (current == null || current.getDelegate() == null) {
+            return Map.of();
+        }
+        return Map.of(
+                "_delegate", current.getDelegate(),
+                "_amount", current.getAmount());
+    }
+
+    @External(readonly=true)
+    public BigInteger getDelegatedPower(Address _delegate) {
+        var current = delegatedPowers.latest(_delegate);
+        return current == null ? BigInteger.ZERO : current.getAmount();
+    }
+
+    @External(readonly=true)
+    public List<BigInteger> getVotingPowers(Address[] _holders) {
+        Context.require(_holders.length <= MAX_BATCH_SIZE, "InvalidBatchSize");
+        return List.of(loadConfig().tokenProxy().balanceOf(_holders));
+    }
+
+    @External(readonly=true)
+    public BigInteger getVoteNonce(Address _voter) {
+        return voteNonces.getOrDefault(_voter, BigInteger.ZERO);
+    }
+
+    // the network id keeps a vote signed for this address on one network from being replayed on another
+    private byte[] voteMessageHash(BigInteger nid, BigInteger pid, String vote, BigInteger nonce) {
+        var w = Context.newByteArrayObjectWriter("RLPn");
+        w.writeListOf(Context.getAddress(), nid, pid, vote, nonce);
+        return Context.hash("sha3-256", w.toByteArray());
+    }
 
-        Context.require(tokenVotes.at(_proposalId).get(sender) == null, "AlreadyVoted");
-        tokenVotes.at(_proposalId).set(sender, new TokenVote(vote, balance));
-        var vs = votes.get(_proposalId);
-        if (vs == null) {
-            vs = new Votes();
+    private Address recoverVoter(BigInteger nid, BigInteger pid, String vote, BigInteger nonce, byte[] signature) {
+        Context.require(signature != null && signature.length == 65, "InvalidSignature");
+        var publicKey = Context.recoverKey("ecdsa-secp256k1", voteMessageHash(nid, pid, vote, nonce), signature,
+                false);
+        var voter = Context.getAddressFromKey(publicKey);
+        Context.require(nonce.equals(getVoteNonce(voter)), "InvalidNonce");
+        voteNonces.set(voter, nonce.add(BigInteger.ONE));
+        return voter;
+    }
+
+    @External
+    public void submitSignedVotes(BigInteger[] _proposalIds, String[] _votes, BigInteger[] _nonces, byte[][] _signatures) {
+        int size = _proposalIds.length;
+        Context.require(size > 0 && size <= MAX_BATCH_SIZE, "InvalidBatchSize");
+        Context.require(_votes.length == size && _nonces.length == size && _signatures.length == size,
+                "BatchLengthMismatch");
+
+        var cfg = loadConfig();
+        var nid = cfg.getNetworkId();
+        Context.require(nid.signum() > 0, "NetworkIdNotSet");
+        Address[] signers = new Address[size];
+        for (int i = 0; i < size; i++) {
+            signers[i] = recoverVoter(nid, _proposalIds[i], _votes[i], _nonces[i], _signatures[i]);
         }
-        vs.increase(vote, balance);
-        votes.set(_proposalId, vs);
+        var balances = cfg.tokenProxy().balanceOf(signers);
+
+        var totals = loadStats();
+        List<BigInteger> pids = new ArrayList<>();
+        Map<BigInteger, ProposalState> states = new HashMap<>();
+        for (int i = 0; i < size; i++) {
+            var pid = _proposalIds[i];
+            var state = states.get(pid);
+            if (state == null) {
+                state = loadState(pid);
+                Context.require(state.isOpen(Context.getBlockTimestamp()), "ProposalNotActive");
+                Context.require(state.getSnapshotRoot() == null, "SnapshotProofRequired");
+                states.put(pid, state);
+                pids.add(pid);
+            }
+            castVote(pid, state, totals, signers[i], choiceOf(state, _votes[i]), balances[i]);
+        }
+        // each tally is written once, however many votes of the batch it received
+        for (BigInteger pid : pids) {
+            storeState(pid, states.get(pid));
+        }
+        stats.set(totals);
     }
 
     @External
     public void cancelProposal(BigInteger _proposalId) {
         Address sender = Context.getCaller();
-        Proposal pl = proposals.get(_proposalId);
-        Context.require(pl != null, "InvalidProposalId");
-        Context.require(pl.getCreator().equals(sender), "NotCreator");
-        Context.require(pl.getStatus() == Proposal.STATUS_ACTIVE, "ProposalNotActive");
+        var state = loadState(_proposalId);
+        var info = loadInfo(_proposalId, state);
+        Context.require(info.getCreator().equals(sender), "NotCreator");
+        Context.require(state.getStatus() == Proposal.STATUS_ACTIVE, "ProposalNotActive");
 
         long now = Context.getBlockTimestamp();
         long graceTime = 3 * HOUR_IN_MICROSECONDS.longValue();
-        Context.require(pl.getStartTime() + graceTime > now, "GraceTimePassed");
+        Context.require(info.getStartTime() + graceTime > now, "GraceTimePassed");
 
-        pl.setStatus(Proposal.STATUS_CANCELED);
-        proposals.set(_proposalId, pl);
+        state.setStatus(Proposal.STATUS_CANCELED);
+        storeState(_proposalId, state);
+        // legacy proposals are counted once they are indexed
+        if (activeProposals.remove(_proposalId)) {
+            changeActiveCount(sender, -1);
+        }
+        canceledProposals.add(_proposalId);
         ProposalCanceled(_proposalId);
     }
 
+    private void finalizeProposal(BigInteger pid, ProposalState state, GovernanceConfig cfg) {
+        var creator = loadInfo(pid, state).getCreator();
+        state.setStatus(Proposal.STATUS_CLOSED);
+        storeState(pid, state);
+        results.set(pid, ProposalResult.compute(state.getVotes(), voterCount.getOrDefault(pid, 0), cfg));
+        if (activeProposals.remove(pid)) {
+            changeActiveCount(creator, -1);
+        }
+        closedProposals.add(pid);
+        ProposalClosed(pid);
+    }
+
     @External
     public void closeProposal(BigInteger _proposalId) {
-        Proposal pl = proposals.get(_proposalId);
-        Context.require(pl != null, "InvalidProposalId");
-        Context.require(pl.getStatus() == Proposal.STATUS_ACTIVE, "ProposalNotActive");
+        var state = loadState(_proposalId);
+        Context.require(state.getStatus() == Proposal.STATUS_ACTIVE, "ProposalNotActive");
 
         long now = Context.getBlockTimestamp();
-        Context.require(pl.getEndTime() <= now, "EndTimeNotReached");
+        Context.require(state.getEndTime() <= now, "EndTimeNotReached");
+
+        finalizeProposal(_proposalId, state, loadConfig());
+    }
+
+    @External
+    public void closeExpired(BigInteger _limit) {
+        Context.require(_limit.signum() > 0, "InvalidLimit");
+        int limit = _limit.min(BigInteger.valueOf(MAX_BATCH_SIZE)).intValue();
+        long now = Context.getBlockTimestamp();
+        GovernanceConfig cfg = null;
+        // entries of canceled or already closed proposals are dropped and count toward the limit
+        for (int i = 0; i < limit && expiryQueue.size() > 0 && expiryQueue.peekEndTime() <= now; i++) {
+            var pid = expiryQueue.pop();
+            var state = loadState(pid);
+            if (state.getStatus() == Proposal.STATUS_ACTIVE) {
+                if (cfg == null) {
+                    cfg = loadConfig();
+                }
+                finalizeProposal(pid, state, cfg);
+            }
+        }
+    }
+
+    private Map<String, Object> proposalToMap(BigInteger _proposalId) {
+        var state = loadState(_proposalId);
+        return proposalToMap(_proposalId, state, loadInfo(_proposalId, state));
+    }
 
-        pl.setStatus(Proposal.STATUS_CLOSED);
-        proposals.set(_proposalId, pl);
-        ProposalClosed(_proposalId);
+    // Multi-choice proposals list their choices and tallies instead of the for/against/abstain voices.
+    private Map<String, Object> proposalToMap(BigInteger _proposalId, ProposalState state, ProposalInfo info) {
+        var vs = state.getVotes();
+        Map<String, Object> map = new HashMap<>();
+        map.put("_proposalId", _proposalId);
+        map.put("_creator", info.getCreator());
+        map.put("_status", Proposal.STATUS_MSG[state.getStatusAt(Context.getBlockTimestamp())]);
+        map.put("_endTime", state.getEndTime());
+        map.put("_startTime", info.getStartTime());
+        map.put("_ipfsHash", info.getIpfsHash());
+        map.put("_snapshot", state.getSnapshotRoot() != null);
+        if (vs.isPreset()) {
+            map.put("_forVoices", vs.getFor());
+            map.put("_againstVoices", vs.getAgainst());
+            map.put("_abstainVoices", vs.getAbstain());
+        } else {
+            map.put("_choices", List.of(info.getChoices()));
+            map.put("_tallies", vs.getTallies());
+        }
+        map.put("_version", state.getVersion());
+        return map;
     }
 
     @External(readonly=true)
     public Map<String, Object> getProposal(BigInteger _proposalId) {
-        Proposal pl = proposals.get(_proposalId);
-        Context.require(pl != null, "InvalidProposalId");
+        return proposalToMap(_proposalId);
+    }
 
-        var vs = votes.get(_proposalId);
-        if (vs == null) {
-            vs = new Votes();
+    @External(readonly=true)
+    public List<BigInteger> getProposalVersions(BigInteger[] _ids) {
+        Context.require(_ids.length <= MAX_PAGE_SIZE, "InvalidBatchSize");
+        List<BigInteger> versions = new ArrayList<>();
+        for (BigInteger pid : _ids) {
+            versions.add(BigInteger.valueOf(loadState(pid).getVersion()));
         }
-        return Map.ofEntries(
-                Map.entry("_proposalId", _proposalId),
-                Map.entry("_creator", pl.getCreator()),
-                Map.entry("_status", Proposal.STATUS_MSG[pl.getStatus()]),
-                Map.entry("_endTime", pl.getEndTime()),
-                Map.entry("_startTime", pl.getStartTime()),
-                Map.entry("_ipfsHash", pl.getIpfsHash()),
-                Map.entry("_forVoices", vs.getFor()),
-                Map.entry("_againstVoices", vs.getAgainst()),
-                Map.entry("_abstainVoices", vs.getAbstain())
-        );
+        return versions;
     }
 
     @External(readonly=true)
-    public Map<String, Object> getVote(Address _voter, BigInteger _proposalId) {
-        var tokenVote = tokenVotes.at(_proposalId).get(_voter);
+    public Map<String, Object> getResult(BigInteger _proposalId) {
+        var result = results.get(_proposalId);
+        if (result == null) {
+            // ended but not closed yet, or closed before results were recorded
+            var state = loadState(_proposalId);
+            Context.require(state.getStatusAt(Context.getBlockTimestamp()) == Proposal.STATUS_CLOSED, "ProposalNotClosed");
+            result = ProposalResult.compute(state.getVotes(), voterCount.getOrDefault(_proposalId, 0), loadConfig());
+        }
+        return result.toMap();
+    }
+
+    @External(readonly=true)
+    public Map<String, Object> getStats() {
+        var totals = loadStats();
+        return Map.of(
+                "_proposals", lastProposalId(),
+                "_active", activeProposals.size(),
+                "_closed", closedProposals.size(),
+                "_canceled", canceledProposals.size(),
+                "_votes", totals.getVotes(),
+                "_voters", totals.getVoters(),
+                "_power", totals.getPower());
+    }
+
+    @External(readonly=true)
+    public Map<String, Object> getProposalStats(BigInteger _proposalId) {
+        var state = loadState(_proposalId);
+        return Map.of(
+                "_status", Proposal.STATUS_MSG[state.getStatusAt(Context.getBlockTimestamp())],
+                "_voters", voterCount.getOrDefault(_proposalId, 0),
+                "_power", state.getVotes().getTotal(),
+                "_version", state.getVersion());
+    }
+
+    private IdIndex statusIndex(int status) {
+        switch (status) {
+            case Proposal.STATUS_ACTIVE:
+                return activeProposals;
+            case Proposal.STATUS_CLOSED:
+                return closedProposals;
+            case Proposal.STATUS_CANCELED:
+                return canceledProposals;
+            default:
+                Context.revert("InvalidStatus");
+                return null;
+        }
+    }
+
+    private IdIndex statusIndex(String status) {
+        int code = Proposal.statusOf(status);
+        Context.require(code != 0, "InvalidStatus");
+        return statusIndex(code);
+    }
+
+    private static int pageSize(BigInteger _limit) {
+        Context.require(_limit.signum() > 0, "InvalidLimit");
+        return _limit.min(BigInteger.valueOf(MAX_PAGE_SIZE)).intValue();
+    }
+
+    private static int pageOffset(BigInteger _offset, int size) {
+        Context.require(_offset.signum() >= 0, "InvalidOffset");
+        return _offset.min(BigInteger.valueOf(size)).intValue();
+    }
+
+    @External(readonly=true)
+    public List<Map<String, Object>> getProposals(BigInteger _offset, BigInteger _limit, @Optional String _status) {
+        int limit = pageSize(_limit);
+        List<Map<String, Object>> page = new ArrayList<>();
+        if (_status != null && !_status.isEmpty()) {
+            var index = statusIndex(_status);
+            long now = Context.getBlockTimestamp();
+            for (BigInteger pid : index.range(pageOffset(_offset, index.size()), limit)) {
+                var state = loadState(pid);
+                // ended proposals stay in the active index until they are closed, but no longer read as active
+                if (index == activeProposals && !state.isOpen(now)) {
+                    continue;
+                }
+                page.add(proposalToMap(pid, state, loadInfo(pid, state)));
+            }
+            return page;
+        }
+
+        Context.require(_offset.signum() >= 0, "InvalidOffset");
+        var end = _offset.add(BigInteger.valueOf(limit)).min(lastProposalId());
+        for (var pid = _offset.add(BigInteger.ONE); pid.compareTo(end) <= 0; pid = pid.add(BigInteger.ONE)) {
+            page.add(proposalToMap(pid));
+        }
+        return page;
+    }
+
+    @External(readonly=true)
+    public BigInteger getProposalCount(String _status) {
+        return BigInteger.valueOf(statusIndex(_status).size());
+    }
+
+    @External(readonly=true)
+    public List<BigInteger> getProposalIds(String _status, BigInteger _offset, BigInteger _limit) {
+        var index = statusIndex(_status);
+        return index.range(pageOffset(_offset, index.size()), pageSize(_limit));
+    }
+
+    @External
+    public void indexProposals(BigInteger _limit) {
+        onlyOwner();
+        var last = lastProposalId();
+        var from = indexedProposalId.getOrDefault(BigInteger.ZERO);
+        var end = from.add(BigInteger.valueOf(pageSize(_limit))).min(last);
+        for (var pid = from.add(BigInteger.ONE); pid.compareTo(end) <= 0; pid = pid.add(BigInteger.ONE)) {
+            var state = loadState(pid);
+            // proposals submitted since the upgrade were indexed as active and queued at submission,
+            // so an active proposal missing from the index has not been queued yet
+            if (statusIndex(state.getStatus()).add(pid) && state.getStatus() == Proposal.STATUS_ACTIVE) {
+                expiryQueue.push(state.getEndTime(), pid);
+            }
+            // and were added to the index of their creator, and counted if active, at submission
+            var creator = loadInfo(pid, state).getCreator();
+            if (creatorIndex(creator).add(pid) && state.getStatus() == Proposal.STATUS_ACTIVE) {
+                changeActiveCount(creator, 1);
+            }
+        }
+        indexedProposalId.set(end);
+    }
+
+    @External
+    public void migrateBatch(BigInteger _limit) {
+        onlyOwner();
+        int budget = pageSize(_limit);
+        var last = lastProposalId();
+        var cursor = migrationCursor.get();
+        var pid = cursor != null ? cursor.getProposalId() : BigInteger.ONE;
+        int position = cursor != null ? cursor.getPosition() : 0;
+        Context.require(pid.compareTo(last) <= 0, "MigrationComplete");
+
+        while (budget > 0 && pid.compareTo(last) <= 0) {
+            if (position == 0) {
+                var state = loadState(pid);
+                var info = loadInfo(pid, state);
+                if (state.needsUpgrade()) {
+                    // the content is unchanged, so the version stays as it is
+                    writeState(pid, state);
+                }
+                // a state in the latest layout may still sit next to an untagged info
+                if (info.needsUpgrade()) {
+                    proposalInfos.set(pid, info);
+                }
+                budget--;
+                position = 1;
+            }
+            int count = voterCount.getOrDefault(pid, 0);
+            int votes = count > 0 && voteArchives.get(pid) == null ? count : 0;
+            int end = Math.min(votes, position - 1 + budget);
+            var proposalVoters = voters.at(pid);
+            var proposalVotes = tokenVotes.at(pid);
+            for (int i = position - 1; i < end; i++) {
+                var voter = proposalVoters.get(i);
+                var tokenVote = proposalVotes.get(voter);
+                if (tokenVote.needsUpgrade()) {
+                    proposalVotes.set(voter, tokenVote);
+                }
+                budget--;
+            }
+            if (end < votes) {
+                position = end + 1;
+                break;
+            }
+            pid = pid.add(BigInteger.ONE);
+            position = 0;
+        }
+        migrationCursor.set(new ProposalCursor(pid, position));
+    }
+
+    @External(readonly=true)
+    public Map<String, Object> getMigrationStatus() {
+        var cursor = migrationCursor.get();
+        var next = cursor != null ? cursor.getProposalId() : BigInteger.ONE;
+        return Map.of(
+                "_nextProposalId", next,
+                "_complete", next.compareTo(lastProposalId()) > 0);
+    }
+
+    @External(readonly=true)
+    public BigInteger getCreatorProposalCount(Address _creator) {
+        return BigInteger.valueOf(creatorIndex(_creator).size());
+    }
+
+    @External(readonly=true)
+    public List<BigInteger> getCreatorProposalIds(Address _creator, BigInteger _offset, BigInteger _limit) {
+        var index = creatorIndex(_creator);
+        return index.range(pageOffset(_offset, index.size()), pageSize(_limit));
+    }
+
+    @External(readonly=true)
+    public BigInteger getActiveProposalCount(Address _creator) {
+        return BigInteger.valueOf(creatorActiveCount.getOrDefault(_creator, 0));
+    }
+
+    // The choice is named as on the proposal, whose tally tells the preset from a multi-choice one.
+    private static Map<String, Object> voteToMap(Votes vs, TokenVote tokenVote) {
         if (tokenVote != null) {
             return Map.of(
-                    "_vote", tokenVote.getVote(),
+                    "_vote", vs.choiceName(tokenVote.getChoice()),
                     "_power", tokenVote.getAmount()
             );
         }
         return Map.of();
     }
 
+    // the vote of `voter` on a proposal, reading the proposal state only if there is one
+    private Map<String, Object> voteToMap(BigInteger pid, Address voter) {
+        var tokenVote = tokenVotes.at(pid).get(voter);
+        return tokenVote != null ? voteToMap(loadState(pid).getVotes(), tokenVote) : Map.of();
+    }
+
+    @External(readonly=true)
+    public Map<String, Object> getVote(Address _voter, BigInteger _proposalId) {
+        return voteToMap(_proposalId, _voter);
+    }
+
+    @External(readonly=true)
+    public List<Map<String, Object>> getVotes(Address _voter, BigInteger[] _proposalIds) {
+        Context.require(_proposalIds.length <= MAX_PAGE_SIZE, "InvalidBatchSize");
+        List<Map<String, Object>> page = new ArrayList<>();
+        for (BigInteger pid : _proposalIds) {
+            page.add(voteToMap(pid, _voter));
+        }
+        return page;
+    }
+
+    @External(readonly=true)
+    public List<Map<String, Object>> getVotesFor(BigInteger _proposalId, Address[] _voters) {
+        Context.require(_voters.length <= MAX_PAGE_SIZE, "InvalidBatchSize");
+        var vs = loadState(_proposalId).getVotes();
+        var proposalVotes = tokenVotes.at(_proposalId);
+        List<Map<String, Object>> page = new ArrayList<>();
+        for (Address voter : _voters) {
+            page.add(voteToMap(vs, proposalVotes.get(voter)));
+        }
+        return page;
+    }
+
+    // The proposal, the vote of `_voter` and whether it can vote on it now, reading each record once.
+    // The balance of the voter is looked up at most once, and only if one of the proposals is open.
+    @External(readonly=true)
+    public List<Map<String, Object>> getVoterDashboard(Address _voter, BigInteger[] _proposalIds) {
+        Context.require(_proposalIds.length <= MAX_PAGE_SIZE, "InvalidBatchSize");
+        long now = Context.getBlockTimestamp();
+        BigInteger balance = null;
+        List<Map<String, Object>> page = new ArrayList<>();
+        for (BigInteger pid : _proposalIds) {
+            var state = loadState(pid);
+            var info = loadInfo(pid, state);
+            boolean eligible = false;
+            if (state.isOpen(now)) {
+                if (state.getSnapshotRoot() != null) {
+                    // the voting power of a snapshot proposal comes with the proof
+                    eligible = true;
+                } else {
+                    if (balance == null) {
+                        balance = loadConfig().tokenProxy().balanceOf(_voter);
+                    }
+                    eligible = balance.signum() > 0
+                            || delegatedPower(pid, info.getStartTime(), _voter).signum() > 0;
+                }
+            }
+            page.add(Map.of(
+                    "_proposal", proposalToMap(pid, state, info),
+                    "_vote", voteToMap(state.getVotes(), tokenVotes.at(pid).get(_voter)),
+                    "_eligible", eligible
+            ));
+        }
+        return page;
+    }
+
+    @External(readonly=true)
+    public BigInteger getVoterCount(BigInteger _proposalId) {
+        return BigInteger.valueOf(voterCount.getOrDefault(_proposalId, 0));
+    }
+
+    @External
+    public void archiveVotes(BigInteger _proposalId, BigInteger _limit) {
+        onlyOwner();
+        Context.require(_limit.signum() > 0, "InvalidLimit");
+        var state = loadState(_proposalId);
+        var status = state.getStatus();
+        Context.require(status == Proposal.STATUS_CLOSED || status == Proposal.STATUS_CANCELED, "ProposalNotClosed");
+        var archive = voteArchives.get(_proposalId);
+        if (archive == null) {
+            int count = voterCount.getOrDefault(_proposalId, 0);
+            Context.require(count > 0, "NothingToArchive");
+            archive = new VoteArchive(count);
+        }
+        Context.require(!archive.isComplete(), "VotesAlreadyArchived");
+
+        int end = archive.getCount() + _limit.min(BigInteger.valueOf(MAX_BATCH_SIZE)).intValue();
+        end = Math.min(end, archive.getVoters());
+        var proposalVoters = voters.at(_proposalId);
+        var proposalVotes = tokenVotes.at(_proposalId);
+        var overrides = delegationOverrides.at(_proposalId);
+        long time = delegationTime(_proposalId, state);
+        for (int i = archive.getCount(); i < end; i++) {
+            var voter = proposalVoters.get(i);
+            archive.add(MerkleProof.voteLeaf(voter, proposalVotes.get(voter)));
+            proposalVotes.set(voter, null);
+            proposalVoters.set(i, null);
+            // every delegate with overrides has a delegator among the voters
+            var delegation = delegationAt(voter, time);
+            if (delegation != null) {
+                overrides.set(delegation.getDelegate(), null);
+            }
+        }
+        voteArchives.set(_proposalId, archive);
+        if (archive.isComplete()) {
+            VotesArchived(_proposalId, archive.getRoot());
+        }
+    }
+
+    @External(readonly=true)
+    public Map<String, Object> getVoteArchive(BigInteger _proposalId) {
+        var archive = voteArchives.get(_proposalId);
+        if (archive == null) {
+            return Map.of();
+        }
+        if (!archive.isComplete()) {
+            return Map.of(
+                    "_voters", archive.getVoters(),
+                    "_archived", archive.getCount());
+        }
+        return Map.of(
+                "_voters", archive.getVoters(),
+                "_archived", archive.getCount(),
+                "_root", archive.getRoot());
+    }
+
+    @External(readonly=true)
+    public boolean verifyArchivedVote(BigInteger _proposalId, Address _voter, String _vote, BigInteger _power,
+                                      byte[][] _proof) {
+        var archive = voteArchives.get(_proposalId);
+        Context.require(archive != null && archive.isComplete(), "VotesNotArchived");
+        var leaf = MerkleProof.voteLeaf(_voter, new TokenVote(choiceOf(loadState(_proposalId), _vote), _power));
+        return MerkleProof.verify(_proof, archive.getRoot(), leaf);
+    }
+
+    @External(readonly=true)
+    public List<Map<String, Object>> getVoters(BigInteger _proposalId, BigInteger _offset, BigInteger _limit) {
+        Context.require(voteArchives.get(_proposalId) == null, "VotesArchived");
+        int count = voterCount.getOrDefault(_proposalId, 0);
+        int offset = pageOffset(_offset, count);
+        int end = Math.min(count, offset + pageSize(_limit));
+        var vs = loadState(_proposalId).getVotes();
+        var proposalVoters = voters.at(_proposalId);
+        var proposalVotes = tokenVotes.at(_proposalId);
+        List<Map<String, Object>> page = new ArrayList<>();
+        for (int i = offset; i < end; i++) {
+            var voter = proposalVoters.get(i);
+            var tokenVote = proposalVotes.get(voter);
+            page.add(Map.of(
+                    "_voter", voter,
+                    "_vote", vs.choiceName(tokenVote.getChoice()),
+                    "_power", tokenVote.getAmount()
+            ));
+        }
+        return page;
+    }
+
+    // [id, creator, status, start time, end time, content hash, for, against, abstain, voters, version, root?]
+    // Multi-choice proposals hold their first three tallies in place of the voices, and are followed by
+    // the root (empty if none) and the whole tally.
+    private List<Object> proposalRow(BigInteger pid, ProposalState state, int count) {
+        var info = loadInfo(pid, state);
+        var vs = state.getVotes();
+        List<Object> row = new ArrayList<>(List.of(pid, info.getCreator(), state.getStatus(), info.getStartTime(),
+                state.getEndTime(), info.getIpfsHash(), vs.getFor(), vs.getAgainst(), vs.getAbstain(), count,
+                state.getVersion()));
+        var root = state.getSnapshotRoot();
+        if (!vs.isPreset()) {
+            row.add(root != null ? root : new byte[0]);
+            row.add(vs.getTallies());
+        } else if (root != null) {
+            row.add(root);
+        }
+        return row;
+    }
+
+    private static byte[] exportCursor(BigInteger pid, int position) {
+        var w = Context.newByteArrayObjectWriter("RLPn");
+        ProposalCursor.writeObject(w, new ProposalCursor(pid, position));
+        return w.toByteArray();
+    }
+
+    // The cursor is the next proposal and the position in it: 0 for the proposal itself, then 1 + the voter index.
+    // The votes of proposals whose votes are archived are not exported.
+    @External(readonly=true)
+    public Map<String, Object> exportState(@Optional byte[] _cursor) {
+        var pid = BigInteger.ONE;
+        int position = 0;
+        if (_cursor != null && _cursor.length > 0) {
+            var cursor = ProposalCursor.readObject(Context.newByteArrayObjectReader("RLPn", _cursor));
+            pid = cursor.getProposalId();
+            position = cursor.getPosition();
+            Context.require(pid.signum() > 0 && position >= 0, "InvalidCursor");
+        }
+
+        var last = lastProposalId();
+        List<List<Object>> proposalRows = new ArrayList<>();
+        List<List<Object>> voteRows = new ArrayList<>();
+        int budget = MAX_EXPORT_SIZE;
+        while (budget > 0 && pid.compareTo(last) <= 0) {
+            int count = voterCount.getOrDefault(pid, 0);
+            var state = loadState(pid);
+            if (position == 0) {
+                proposalRows.add(proposalRow(pid, state, count));
+                budget--;
+                position = 1;
+            }
+            int votes = count > 0 && voteArchives.get(pid) == null ? count : 0;
+            int end = Math.min(votes, position - 1 + budget);
+            var proposalVoters = voters.at(pid);
+            var proposalVotes = tokenVotes.at(pid);
+            for (int i = position - 1; i < end; i++) {
+                var voter = proposalVoters.get(i);
+                var tokenVote = proposalVotes.get(voter);
+                voteRows.add(List.of(pid, voter, state.getVotes().choiceName(tokenVote.getChoice()),
+                        tokenVote.getAmount()));
+                budget--;
+            }
+            if (end < votes) {
+                position = end + 1;
+                break;
+            }
+            pid = pid.add(BigInteger.ONE);
+            position = 0;
+        }
+
+        Map<String, Object> page = new HashMap<>();
+        page.put("_proposals", proposalRows);
+        page.put("_votes", voteRows);
+        if (pid.compareTo(last) <= 0) {
+            page.put("_cursor", exportCursor(pid, position));
+        }
+        if (_cursor == null || _cursor.length == 0) {
+            var cfg = loadConfig();
+            page.put("_config", Map.of(
+                    "_token", governanceTokenInfo(),
+                    "_minimumThreshold", cfg.getMinimumThreshold(),
+                    "_quorum", cfg.getQuorum(),
+                    "_passThreshold", cfg.getPassThreshold(),
+                    "_maxActiveProposals", cfg.getMaxActiveProposals(),
+                    "_networkId", cfg.getNetworkId(),
+                    "_lastProposalId", last));
+        }
+        return page;
+    }
+
     @EventLog(indexed=1)
     public void ProposalSubmitted(BigInteger _proposalId, Address _creator) {}
 
@@ -254,4 +1171,20 @@ public class AgoraImpl implements AgoraGov {
 
     @EventLog(indexed=1)
     public void ProposalClosed(BigInteger _proposalId) {}
+
+    @EventLog(indexed=2)
+    public void VoteCast(BigInteger _proposalId, Address _voter, String _vote, BigInteger _power) {}
+
+    @EventLog(indexed=1)
+    public void VotesArchived(BigInteger _proposalId, byte[] _root) {}
+
+    @EventLog(indexed=2)
+    public void Delegated(Address _delegator, Address _delegate, BigInteger _amount) {}
+
+    @EventLog(indexed=2)
+    public void Undelegated(Address _delegator, Address _delegate) {}
+
+    @EventLog(indexed=2)
+    public void VoteChanged(BigInteger _proposalId, Address _voter, String _oldVote, BigInteger _oldPower,
+                            String _newVote, BigInteger _newPower) {}
 }
@@ -0,0 +1,71 @@
+/*
+ * Copyright 2022 Craft Network
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package network.craft.score;
+
+import score.Address;
+import score.ObjectReader;
+import score.ObjectWriter;
+
+import java.math.BigInteger;
+
+/**
+ * A value that holds from a point in time until the next checkpoint of the same account:
+ * the delegate and delegated balance of a delegator, or the total delegated to a delegate.
+ */
+public class Checkpoint {
+    private final long time;
+    // null for delegated totals, and for delegators that have undelegated
+    private final Address delegate;
+    private final BigInteger amount;
+
+    public Checkpoint(long time, Address delegate, BigInteger amount) {
+        this.time = time;
+        this.delegate = delegate;
+        this.amount = amount;
+    }
+
+    public long getTime() {
+        return time;
+    }
+
+    public Address getDelegate() {
+        return delegate;
+    }
+
+    public BigInteger getAmount() {
+        return amount;
+    }
+
+    public static void writeObject(ObjectWriter w, Checkpoint c) {
+        w.beginList(3);
+        w.write(c.time);
+        w.writeNullable(c.delegate);
+        w.write(c.amount);
+        w.end();
+    }
+
+    public static Checkpoint readObject(ObjectReader r) {
+        r.beginList();
+        Checkpoint c = new Checkpoint(
+                r.readLong(),
+                r.readNullable(Address.class),
+                r.readBigInteger()
+        );
+        r.end();
+        return c;
+    }
+}
@@ -0,0 +1,76 @@
+/*
+ * Copyright 2022 Craft Network
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package network.craft.score;
+
+import score.Address;
+import score.BranchDB;
+import score.Context;
+import score.DictDB;
+
+/**
+ * The checkpoints of each account, in time order.
+ * Updates append or overwrite the last checkpoint; lookups in the past are binary searches.
+ */
+public class CheckpointHistory {
+    private final BranchDB<Address, DictDB<Integer, Checkpoint>> checkpoints;
+    private final DictDB<Address, Integer> counts;
+
+    public CheckpointHistory(String id) {
+        this.checkpoints = Context.newBranchDB(id, Checkpoint.class);
+        this.counts = Context.newDictDB(id + "_count", Integer.class);
+    }
+
+    public int size(Address owner) {
+        return counts.getOrDefault(owner, 0);
+    }
+
+    public Checkpoint latest(Address owner) {
+        int size = size(owner);
+        return size == 0 ? null : checkpoints.at(owner).get(size - 1);
+    }
+
+    /**
+     * Returns the checkpoint in effect just before the given time, which excludes the updates made
+     * in the block at that time.
+     */
+    public Checkpoint before(Address owner, long time) {
+        var history = checkpoints.at(owner);
+        int lo = 0;
+        int hi = size(owner);
+        while (lo < hi) {
+            int mid = (lo + hi) >>> 1;
+            if (history.get(mid).getTime() < time) {
+                lo = mid + 1;
+            } else {
+                hi = mid;
+            }
+        }
+        return lo == 0 ? null : history.get(lo - 1);
+    }
+
+    // several updates in the same block keep a single checkpoint
+    public void push(Address owner, Checkpoint checkpoint) {
+        var history = checkpoints.at(owner);
+        int size = size(owner);
+        if (size > 0 && history.get(size - 1).getTime() == checkpoint.getTime()) {
+            history.set(size - 1, checkpoint);
+        } else {
+            history.set(size, checkpoint);
+            counts.set(owner, size + 1);
+        }
+    }
+}
@@ -0,0 +1,92 @@
+/*
+ * Copyright 2022 Craft Network
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package network.craft.score;
+
+import score.ArrayDB;
+import score.Context;
+
+import java.math.BigInteger;
+
+/**
+ * A binary min-heap of proposal ids ordered by end time.
+ * Each entry packs the end time in the high bits and the id in the low 64 bits,
+ * so entries compare by end time first without reading the proposals.
+ */
+public class ExpiryQueue {
+    private static final int ID_BITS = 64;
+    private static final BigInteger ID_MASK = BigInteger.ONE.shiftLeft(ID_BITS).subtract(BigInteger.ONE);
+
+    private final ArrayDB<BigInteger> heap;
+
+    public ExpiryQueue(String id) {
+        this.heap = Context.newArrayDB(id, BigInteger.class);
+    }
+
+    public int size() {
+        return heap.size();
+    }
+
+    public void push(long endTime, BigInteger pid) {
+        var entry = BigInteger.valueOf(endTime).shiftLeft(ID_BITS).or(pid);
+        int i = heap.size();
+        heap.add(entry);
+        while (i > 0) {
+            int parent = (i - 1) / 2;
+            var p = heap.get(parent);
+            if (p.compareTo(entry) <= 0) {
+                break;
+            }
+            heap.set(i, p);
+            i = parent;
+        }
+        heap.set(i, entry);
+    }
+
+    public long peekEndTime() {
+        return heap.get(0).shiftRight(ID_BITS).longValue();
+    }
+
+    public BigInteger pop() {
+        var top = heap.get(0);
+        var last = heap.pop();
+        int size = heap.size();
+        if (size > 0) {
+            int i = 0;
+            while (true) {
+                int child = 2 * i + 1;
+                if (child >= size) {
+                    break;
+                }
+                var c = heap.get(child);
+                if (child + 1 < size) {
+                    var right = heap.get(child + 1);
+                    if (right.compareTo(c) < 0) {
+                        child++;
+                        c = right;
+                    }
+                }
+                if (last.compareTo(c) <= 0) {
+                    break;
+                }
+                heap.set(i, c);
+                i = child;
+            }
+            heap.set(i, last);
+        }
+        return top.and(ID_MASK);
+    }
+}
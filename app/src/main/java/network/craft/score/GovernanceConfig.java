@@ -0,0 +1,145 @@
+/*
+ * Copyright 2022 Craft Network
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package network.craft.score;
+
+import score.Address;
+import score.ObjectReader;
+import score.ObjectWriter;
+
+import java.math.BigInteger;
+
+public class GovernanceConfig {
+    public static final int DEFAULT_PASS_THRESHOLD = ProposalResult.BASIS_POINTS / 2;
+
+    private Address tokenAddress;
+    private String tokenType;
+    private BigInteger tokenId;
+    private BigInteger minimumThreshold;
+    // total voting power a proposal needs to be decided, abstentions included
+    private BigInteger quorum = BigInteger.ZERO;
+    // share of the for votes among the decisive votes a proposal must exceed to pass, in basis points
+    private int passThreshold = DEFAULT_PASS_THRESHOLD;
+    // number of proposals a creator can have active at the same time, zero for no limit
+    private int maxActiveProposals;
+    // network id signed votes are bound to, zero until it is set
+    private BigInteger networkId = BigInteger.ZERO;
+
+    public GovernanceConfig() {
+        this(null, null, BigInteger.ZERO, BigInteger.ZERO);
+    }
+
+    public GovernanceConfig(Address tokenAddress, String tokenType, BigInteger tokenId, BigInteger minimumThreshold) {
+        this.tokenAddress = tokenAddress;
+        this.tokenType = tokenType;
+        this.tokenId = tokenId;
+        this.minimumThreshold = minimumThreshold;
+    }
+
+    public Address getTokenAddress() {
+        return tokenAddress;
+    }
+
+    public String getTokenType() {
+        return tokenType;
+    }
+
+    public BigInteger getTokenId() {
+        return tokenId;
+    }
+
+    public void setToken(Address address, String type, BigInteger id) {
+        this.tokenAddress = address;
+        this.tokenType = type;
+        this.tokenId = id;
+    }
+
+    public BigInteger getMinimumThreshold() {
+        return minimumThreshold;
+    }
+
+    public void setMinimumThreshold(BigInteger minimumThreshold) {
+        this.minimumThreshold = minimumThreshold;
+    }
+
+    public BigInteger getQuorum() {
+        return quorum;
+    }
+
+    public int getPassThreshold() {
+        return passThreshold;
+    }
+
+    public void setVotingRules(BigInteger quorum, int passThreshold) {
+        this.quorum = quorum;
+        this.passThreshold = passThreshold;
+    }
+
+    public int getMaxActiveProposals() {
+        return maxActiveProposals;
+    }
+
+    public void setMaxActiveProposals(int maxActiveProposals) {
+        this.maxActiveProposals = maxActiveProposals;
+    }
+
+    public BigInteger getNetworkId() {
+        return networkId;
+    }
+
+    public void setNetworkId(BigInteger networkId) {
+        this.networkId = networkId;
+    }
+
+    public TokenProxy tokenProxy() {
+        return new TokenProxy(tokenAddress, tokenType, tokenId);
+    }
+
+    public static void writeObject(ObjectWriter w, GovernanceConfig c) {
+        w.beginList(8);
+        w.writeNullable(c.tokenAddress);
+        w.writeNullable(c.tokenType);
+        w.write(c.tokenId);
+        w.write(c.minimumThreshold);
+        w.write(c.quorum);
+        w.write(c.passThreshold);
+        w.write(c.maxActiveProposals);
+        w.write(c.networkId);
+        w.end();
+    }
+
+    public static GovernanceConfig readObject(ObjectReader r) {
+        r.beginList();
+        GovernanceConfig c = new GovernanceConfig(
+                r.readNullable(Address.class),
+                r.readNullable(String.class),
+                r.readBigInteger(),
+                r.readBigInteger()
+        );
+        // the fields below were added later, configurations stored before keep the defaults
+        if (r.hasNext()) {
+            c.setVotingRules(r.readBigInteger(), r.readInt());
+        }
+        if (r.hasNext()) {
+            c.setMaxActiveProposals(r.readInt());
+        }
+        if (r.hasNext()) {
+            c.setNetworkId(r.readBigInteger());
+        }
+        r.end();
+        return c;
+    }
+}
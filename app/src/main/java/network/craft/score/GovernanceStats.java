@@ -0,0 +1,84 @@
+/*
+ * Copyright 2022 Craft Network
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package network.craft.score;
+
+import score.ObjectReader;
+import score.ObjectWriter;
+
+import java.math.BigInteger;
+
+/**
+ * Running totals of the votes, updated by every vote so that they can be read without visiting the proposals.
+ * Votes cast before the totals were introduced are not counted.
+ */
+public class GovernanceStats {
+    // every vote cast, changed votes included
+    private long votes;
+    // distinct voters summed over the proposals
+    private long voters;
+    // voting power in the tallies of all the proposals
+    private BigInteger power;
+
+    public GovernanceStats() {
+        this(0, 0, BigInteger.ZERO);
+    }
+
+    public GovernanceStats(long votes, long voters, BigInteger power) {
+        this.votes = votes;
+        this.voters = voters;
+        this.power = power;
+    }
+
+    public long getVotes() {
+        return votes;
+    }
+
+    public long getVoters() {
+        return voters;
+    }
+
+    public BigInteger getPower() {
+        return power;
+    }
+
+    /**
+     * Counts a vote that changed the voting power in the tallies by {@code delta},
+     * which is negative when a vote is changed to a smaller balance.
+     */
+    public void addVote(boolean newVoter, BigInteger delta) {
+        votes++;
+        if (newVoter) {
+            voters++;
+        }
+        power = power.add(delta);
+    }
+
+    public static void writeObject(ObjectWriter w, GovernanceStats s) {
+        w.writeListOf(s.votes, s.voters, s.power);
+    }
+
+    public static GovernanceStats readObject(ObjectReader r) {
+        r.beginList();
+        GovernanceStats s = new GovernanceStats(
+                r.readLong(),
+                r.readLong(),
+                r.readBigInteger()
+        );
+        r.end();
+        return s;
+    }
+}
@@ -0,0 +1,90 @@
+/*
+ * Copyright 2022 Craft Network
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package network.craft.score;
+
+import score.ArrayDB;
+import score.Context;
+import score.DictDB;
+
+import java.math.BigInteger;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * An enumerable set of ids with constant-time insertion and removal.
+ * Removal moves the last id into the freed slot, so the iteration order is not stable.
+ */
+public class IdIndex {
+    private final ArrayDB<BigInteger> ids;
+    // id => position in `ids` plus one, so that zero means absent
+    private final DictDB<BigInteger, Integer> positions;
+
+    public IdIndex(String id) {
+        this.ids = Context.newArrayDB(id, BigInteger.class);
+        this.positions = Context.newDictDB(id + "_pos", Integer.class);
+    }
+
+    public int size() {
+        return ids.size();
+    }
+
+    public boolean contains(BigInteger id) {
+        return positions.getOrDefault(id, 0) != 0;
+    }
+
+    /**
+     * Adds an id to the set.
+     *
+     * @return false if the id was already in the set
+     */
+    public boolean add(BigInteger id) {
+        if (contains(id)) {
+            return false;
+        }
+        ids.add(id);
+        positions.set(id, ids.size());
+        return true;
+    }
+
+    /**
+     * Removes an id from the set.
+     *
+     * @return false if the id was not in the set
+     */
+    public boolean remove(BigInteger id) {
+        int position = positions.getOrDefault(id, 0);
+        if (position == 0) {
+            return false;
+        }
+        BigInteger last = ids.pop();
+        if (position != ids.size() + 1) {
+            ids.set(position - 1, last);
+            positions.set(last, position);
+        }
+        positions.set(id, null);
+        return true;
+    }
+
+    public List<BigInteger> range(int offset, int limit) {
+        List<BigInteger> page = new ArrayList<>();
+        int size = ids.size();
+        for (int i = offset; i < size && i - offset < limit; i++) {
+            page.add(ids.get(i));
+        }
+        return page;
+    }
+}
@@ -0,0 +1,80 @@
+/*
+ * Copyright 2022 Craft Network
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package network.craft.score;
+
+import score.Address;
+import score.Context;
+
+import java.math.BigInteger;
+
+/**
+ * Verifies membership proofs against the root of a balance snapshot or of archived votes.
+ * A balance leaf is {@code sha3_256(0x00 || address || balance)}, a vote leaf is
+ * {@code sha3_256(0x02 || address || choice || power)} and an inner node is
+ * {@code sha3_256(0x01 || min(a, b) || max(a, b))}, so proofs need no left/right flags.
+ */
+public class MerkleProof {
+    private static final byte LEAF_PREFIX = 0;
+    private static final byte NODE_PREFIX = 1;
+    private static final byte VOTE_PREFIX = 2;
+
+    public static byte[] leaf(Address holder, BigInteger balance) {
+        return Context.hash("sha3-256", concat(LEAF_PREFIX, holder.toByteArray(), balance.toByteArray()));
+    }
+
+    public static byte[] voteLeaf(Address voter, TokenVote vote) {
+        byte[] power = vote.getAmount().toByteArray();
+        byte[] body = new byte[1 + power.length];
+        body[0] = (byte) vote.getChoice();
+        System.arraycopy(power, 0, body, 1, power.length);
+        return Context.hash("sha3-256", concat(VOTE_PREFIX, voter.toByteArray(), body));
+    }
+
+    public static byte[] node(byte[] a, byte[] b) {
+        return compare(a, b) <= 0
+                ? Context.hash("sha3-256", concat(NODE_PREFIX, a, b))
+                : Context.hash("sha3-256", concat(NODE_PREFIX, b, a));
+    }
+
+    public static boolean verify(byte[][] proof, byte[] root, byte[] leaf) {
+        byte[] node = leaf;
+        for (byte[] sibling : proof) {
+            node = node(node, sibling);
+        }
+        return compare(node, root) == 0;
+    }
+
+    private static byte[] concat(byte prefix, byte[] a, byte[] b) {
+        byte[] out = new byte[1 + a.length + b.length];
+        out[0] = prefix;
+        System.arraycopy(a, 0, out, 1, a.length);
+        System.arraycopy(b, 0, out, 1 + a.length, b.length);
+        return out;
+    }
+
+    // unsigned lexicographic order
+    private static int compare(byte[] a, byte[] b) {
+        int n = Math.min(a.length, b.length);
+        for (int i = 0; i < n; i++) {
+            int d = (a[i] & 0xff) - (b[i] & 0xff);
+            if (d != 0) {
+                return d;
+            }
+        }
+        return a.length - b.length;
+    }
+}
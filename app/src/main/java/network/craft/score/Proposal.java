@@ -30,6 +30,9 @@ public class Proposal {
             "Closed",
             "Canceled"
     };
+    private static final int STATUS_BITS = 4;
+    // 1: tagged packed layout; 0: untagged packed layout, or with a trailing status
+    public static final int LAYOUT = 1;
 
     private final Address creator;
     private final long startTime;
@@ -37,6 +40,15 @@ public class Proposal {
     private final String ipfsHash;
     private int status;
 
+    public static int statusOf(String msg) {
+        for (int i = STATUS_ACTIVE; i < STATUS_MSG.length; i++) {
+            if (STATUS_MSG[i].equalsIgnoreCase(msg)) {
+                return i;
+            }
+        }
+        return 0;
+    }
+
     public Proposal(Address creator, long startTime, long endTime, String ipfsHash, int status) {
         this.creator = creator;
         this.startTime = startTime;
@@ -69,19 +81,28 @@ public class Proposal {
         this.status = status;
     }
 
+    // The status is packed into the low bits of the start time, and the end time is stored
+    // as the voting period. Legacy records have a trailing status field instead.
     public static void writeObject(ObjectWriter w, Proposal p) {
-        w.writeListOf(p.creator, p.startTime, p.endTime, p.ipfsHash, p.status);
+        w.writeListOf(RecordVersion.tag(LAYOUT), p.creator, p.startTime << STATUS_BITS | p.status,
+                p.endTime - p.startTime, p.ipfsHash);
     }
 
     public static Proposal readObject(ObjectReader r) {
         r.beginList();
-        Proposal p = new Proposal(
-                r.readAddress(),
-                r.readLong(),
-                r.readLong(),
-                r.readString(),
-                r.readInt()
-        );
+        byte[] first = r.readByteArray();
+        Address creator = RecordVersion.of(first) == RecordVersion.UNTAGGED ? new Address(first) : r.readAddress();
+        long header = r.readLong();
+        long period = r.readLong();
+        String ipfsHash = r.readString();
+        Proposal p;
+        if (r.hasNext()) {
+            p = new Proposal(creator, header, period, ipfsHash, r.readInt());
+        } else {
+            long startTime = header >>> STATUS_BITS;
+            int status = (int) (header & ((1 << STATUS_BITS) - 1));
+            p = new Proposal(creator, startTime, startTime + period, ipfsHash, status);
+        }
         r.end();
         return p;
     }
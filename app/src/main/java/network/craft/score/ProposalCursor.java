@@ -0,0 +1,58 @@
+/*
+ * Copyright 2022 Craft Network
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package network.craft.score;
+
+import score.ObjectReader;
+import score.ObjectWriter;
+
+import java.math.BigInteger;
+
+/**
+ * A position in a walk over the proposals and their votes: the proposal itself at position 0,
+ * then its voters from position 1 on, in the order of the voter registry.
+ */
+public class ProposalCursor {
+    private final BigInteger proposalId;
+    private final int position;
+
+    public ProposalCursor(BigInteger proposalId, int position) {
+        this.proposalId = proposalId;
+        this.position = position;
+    }
+
+    public BigInteger getProposalId() {
+        return proposalId;
+    }
+
+    public int getPosition() {
+        return position;
+    }
+
+    public static void writeObject(ObjectWriter w, ProposalCursor c) {
+        w.writeListOf(c.proposalId, c.position);
+    }
+
+    public static ProposalCursor readObject(ObjectReader r) {
+        r.beginList();
+        ProposalCursor c = new ProposalCursor(
+                r.readBigInteger(),
+                r.readInt()
+        );
+        r.end();
+        return c;
+    }
+}
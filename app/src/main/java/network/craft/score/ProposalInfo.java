@@ -0,0 +1,113 @@
+/*
+ * Copyright 2022 Craft Network
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package network.craft.score;
+
+import score.Address;
+import score.ObjectReader;
+import score.ObjectWriter;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * The immutable part of a proposal, written once at submission and read only by the detail views.
+ */
+public class ProposalInfo {
+    // 1: tagged [creator, start time, content hash, choice labels?]; 0: untagged
+    public static final int LAYOUT = 1;
+
+    private final Address creator;
+    private final long startTime;
+    private final String ipfsHash;
+    // the labels of the choices of a multi-choice proposal, null for the for/against/abstain preset
+    private final String[] choices;
+    private int layout = LAYOUT;
+
+    public ProposalInfo(Address creator, long startTime, String ipfsHash) {
+        this(creator, startTime, ipfsHash, null);
+    }
+
+    public ProposalInfo(Address creator, long startTime, String ipfsHash, String[] choices) {
+        this.creator = creator;
+        this.startTime = startTime;
+        this.ipfsHash = ipfsHash;
+        this.choices = choices;
+    }
+
+    public static ProposalInfo fromLegacy(Proposal pl) {
+        return new ProposalInfo(pl.getCreator(), pl.getStartTime(), pl.getIpfsHash());
+    }
+
+    public Address getCreator() {
+        return creator;
+    }
+
+    public long getStartTime() {
+        return startTime;
+    }
+
+    public String getIpfsHash() {
+        return ipfsHash;
+    }
+
+    public String[] getChoices() {
+        return choices;
+    }
+
+    public boolean needsUpgrade() {
+        return layout < LAYOUT;
+    }
+
+    public static void writeObject(ObjectWriter w, ProposalInfo p) {
+        w.beginList(p.choices == null ? 4 : 5);
+        w.write(RecordVersion.tag(LAYOUT));
+        w.write(p.creator);
+        w.write(p.startTime);
+        w.write(p.ipfsHash);
+        if (p.choices != null) {
+            w.beginList(p.choices.length);
+            for (String choice : p.choices) {
+                w.write(choice);
+            }
+            w.end();
+        }
+        w.end();
+    }
+
+    public static ProposalInfo readObject(ObjectReader r) {
+        r.beginList();
+        byte[] first = r.readByteArray();
+        int layout = RecordVersion.of(first);
+        Address creator = layout == RecordVersion.UNTAGGED ? new Address(first) : r.readAddress();
+        long startTime = r.readLong();
+        String ipfsHash = r.readString();
+        String[] choices = null;
+        if (r.hasNext()) {
+            List<String> labels = new ArrayList<>();
+            r.beginList();
+            while (r.hasNext()) {
+                labels.add(r.readString());
+            }
+            r.end();
+            choices = labels.toArray(new String[0]);
+        }
+        ProposalInfo p = new ProposalInfo(creator, startTime, ipfsHash, choices);
+        p.layout = layout;
+        r.end();
+        return p;
+    }
+}
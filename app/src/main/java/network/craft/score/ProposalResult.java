@@ -0,0 +1,168 @@
+/*
+ * Copyright 2022 Craft Network
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package network.craft.score;
+
+import score.ObjectReader;
+import score.ObjectWriter;
+
+import java.math.BigInteger;
+import java.util.Map;
+
+/**
+ * The outcome of a closed proposal, computed once with the voting rules in force when it was closed.
+ */
+public class ProposalResult {
+    public static final int OUTCOME_PASSED = 1;
+    public static final int OUTCOME_REJECTED = 2;
+    public static final int OUTCOME_NO_QUORUM = 3;
+    public static final int OUTCOME_DECIDED = 4;
+    public static final int OUTCOME_TIED = 5;
+    public static final String[] OUTCOME_MSG = new String[]{
+            "None",
+            "Passed",
+            "Rejected",
+            "NoQuorum",
+            "Decided",
+            "Tied"
+    };
+    public static final int BASIS_POINTS = 10_000;
+
+    private final int outcome;
+    private final BigInteger turnout;
+    private final int voters;
+    private final BigInteger margin;
+    // the leading choice of a decided multi-choice proposal, -1 otherwise
+    private final int winner;
+
+    public ProposalResult(int outcome, BigInteger turnout, int voters, BigInteger margin) {
+        this(outcome, turnout, voters, margin, -1);
+    }
+
+    public ProposalResult(int outcome, BigInteger turnout, int voters, BigInteger margin, int winner) {
+        this.outcome = outcome;
+        this.turnout = turnout;
+        this.voters = voters;
+        this.margin = margin;
+        this.winner = winner;
+    }
+
+    /**
+     * Applies the voting rules to a final tally.
+     * Abstentions count toward the quorum but not toward the pass threshold,
+     * which is the share of the for votes among the for and against votes, in basis points.
+     */
+    public static ProposalResult compute(Votes vs, int voters, GovernanceConfig cfg) {
+        if (!vs.isPreset()) {
+            return plurality(vs, voters, cfg);
+        }
+        var decisive = vs.getFor().add(vs.getAgainst());
+        var turnout = vs.getTotal();
+        int outcome;
+        if (turnout.compareTo(cfg.getQuorum()) < 0 || turnout.signum() == 0) {
+            outcome = OUTCOME_NO_QUORUM;
+        } else {
+            var share = vs.getFor().multiply(BigInteger.valueOf(BASIS_POINTS));
+            var required = decisive.multiply(BigInteger.valueOf(cfg.getPassThreshold()));
+            outcome = share.compareTo(required) > 0 ? OUTCOME_PASSED : OUTCOME_REJECTED;
+        }
+        return new ProposalResult(outcome, turnout, voters, vs.getFor().subtract(vs.getAgainst()));
+    }
+
+    /**
+     * Applies the quorum to the final tally of a multi-choice proposal, which is decided by the choice
+     * with the most voting power. The margin is its lead over the runner-up.
+     */
+    private static ProposalResult plurality(Votes vs, int voters, GovernanceConfig cfg) {
+        var turnout = vs.getTotal();
+        if (turnout.compareTo(cfg.getQuorum()) < 0 || turnout.signum() == 0) {
+            return new ProposalResult(OUTCOME_NO_QUORUM, turnout, voters, BigInteger.ZERO);
+        }
+        int leader = 0;
+        var runnerUp = BigInteger.ZERO;
+        for (int i = 1; i < vs.getChoices(); i++) {
+            var tally = vs.getTally(i);
+            if (tally.compareTo(vs.getTally(leader)) > 0) {
+                runnerUp = vs.getTally(leader);
+                leader = i;
+            } else if (tally.compareTo(runnerUp) > 0) {
+                runnerUp = tally;
+            }
+        }
+        var margin = vs.getTally(leader).subtract(runnerUp);
+        if (margin.signum() == 0) {
+            return new ProposalResult(OUTCOME_TIED, turnout, voters, margin);
+        }
+        return new ProposalResult(OUTCOME_DECIDED, turnout, voters, margin, leader);
+    }
+
+    public int getOutcome() {
+        return outcome;
+    }
+
+    public BigInteger getTurnout() {
+        return turnout;
+    }
+
+    public int getVoters() {
+        return voters;
+    }
+
+    public BigInteger getMargin() {
+        return margin;
+    }
+
+    public int getWinner() {
+        return winner;
+    }
+
+    public Map<String, Object> toMap() {
+        if (winner >= 0) {
+            return Map.of(
+                    "_outcome", OUTCOME_MSG[outcome],
+                    "_turnout", turnout,
+                    "_voters", voters,
+                    "_margin", margin,
+                    "_winner", winner);
+        }
+        return Map.of(
+                "_outcome", OUTCOME_MSG[outcome],
+                "_turnout", turnout,
+                "_voters", voters,
+                "_margin", margin);
+    }
+
+    public static void writeObject(ObjectWriter w, ProposalResult r) {
+        if (r.winner >= 0) {
+            w.writeListOf(r.outcome, r.turnout, r.voters, r.margin, r.winner);
+        } else {
+            w.writeListOf(r.outcome, r.turnout, r.voters, r.margin);
+        }
+    }
+
+    public static ProposalResult readObject(ObjectReader r) {
+        r.beginList();
+        ProposalResult result = new ProposalResult(
+                r.readInt(),
+                r.readBigInteger(),
+                r.readInt(),
+                r.readBigInteger(),
+                r.hasNext() ? r.readInt() : -1
+        );
+        r.end();
+        return result;
+    }
+}
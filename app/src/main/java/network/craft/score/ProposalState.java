@@ -0,0 +1,154 @@
+/*
+ * Copyright 2022 Craft Network
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package network.craft.score;
+
+import score.ObjectReader;
+import score.ObjectWriter;
+
+/**
+ * The mutable part of a proposal, read and written by every vote.
+ * It is kept apart from the {@link ProposalInfo} so that votes never load the variable-length content hash.
+ */
+public class ProposalState {
+    private static final int STATUS_BITS = 4;
+    private static final int SNAPSHOT_ROOT_LENGTH = 32;
+    // 1: tagged [header, votes, version, root?]; 0: untagged, with or without the version
+    public static final int LAYOUT = 1;
+
+    private int status;
+    private final long endTime;
+    private final Votes votes;
+    // root of the balance snapshot, null if voting power is read from the token contract
+    private final byte[] snapshotRoot;
+    // number of updates stored so far, so that clients can tell whether a cached copy is stale
+    private long version;
+    // the record this state was derived from, if the proposal is still stored in the legacy layout
+    private Proposal legacy;
+    private int layout = LAYOUT;
+
+    public ProposalState(int status, long endTime, Votes votes) {
+        this(status, endTime, votes, null);
+    }
+
+    public ProposalState(int status, long endTime, Votes votes, byte[] snapshotRoot) {
+        this.status = status;
+        this.endTime = endTime;
+        this.votes = votes;
+        this.snapshotRoot = snapshotRoot;
+    }
+
+    public static ProposalState fromLegacy(Proposal pl, Votes votes) {
+        var state = new ProposalState(pl.getStatus(), pl.getEndTime(), votes != null ? votes : new Votes());
+        state.legacy = pl;
+        return state;
+    }
+
+    public int getStatus() {
+        return status;
+    }
+
+    // An active proposal past its end time is reported as closed, whether or not it has been closed yet.
+    public int getStatusAt(long now) {
+        return status == Proposal.STATUS_ACTIVE && endTime <= now ? Proposal.STATUS_CLOSED : status;
+    }
+
+    public boolean isOpen(long now) {
+        return status == Proposal.STATUS_ACTIVE && now < endTime;
+    }
+
+    public void setStatus(int status) {
+        this.status = status;
+    }
+
+    public long getEndTime() {
+        return endTime;
+    }
+
+    public Votes getVotes() {
+        return votes;
+    }
+
+    public byte[] getSnapshotRoot() {
+        return snapshotRoot;
+    }
+
+    public long getVersion() {
+        return version;
+    }
+
+    public void bumpVersion() {
+        version++;
+    }
+
+    // stored in the legacy records, or in an earlier layout
+    public boolean needsUpgrade() {
+        return legacy != null || layout < LAYOUT;
+    }
+
+    public Proposal getLegacy() {
+        return legacy;
+    }
+
+    public void clearLegacy() {
+        legacy = null;
+    }
+
+    public static void writeObject(ObjectWriter w, ProposalState s) {
+        w.beginList(s.snapshotRoot == null ? 4 : 5);
+        w.write(RecordVersion.tag(LAYOUT));
+        w.write(s.endTime << STATUS_BITS | s.status);
+        Votes.writeObject(w, s.votes);
+        w.write(s.version);
+        if (s.snapshotRoot != null) {
+            w.write(s.snapshotRoot);
+        }
+        w.end();
+    }
+
+    public static ProposalState readObject(ObjectReader r) {
+        r.beginList();
+        byte[] first = r.readByteArray();
+        int layout = RecordVersion.of(first);
+        long header = layout == RecordVersion.UNTAGGED ? RecordVersion.toLong(first) : r.readLong();
+        var votes = Votes.readObject(r);
+        long version = 0;
+        byte[] snapshotRoot = null;
+        if (layout != RecordVersion.UNTAGGED) {
+            version = r.readLong();
+            snapshotRoot = r.hasNext() ? r.readByteArray() : null;
+        } else if (r.hasNext()) {
+            // records written before versions were added go straight from the tally to the root
+            byte[] next = r.readByteArray();
+            if (next.length == SNAPSHOT_ROOT_LENGTH) {
+                snapshotRoot = next;
+            } else {
+                version = RecordVersion.toLong(next);
+                snapshotRoot = r.hasNext() ? r.readByteArray() : null;
+            }
+        }
+        r.end();
+        ProposalState s = new ProposalState(
+                (int) (header & ((1 << STATUS_BITS) - 1)),
+                header >>> STATUS_BITS,
+                votes,
+                snapshotRoot
+        );
+        s.version = version;
+        s.layout = layout;
+        return s;
+    }
+}
@@ -0,0 +1,54 @@
+/*
+ * Copyright 2022 Craft Network
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package network.craft.score;
+
+import java.math.BigInteger;
+
+/**
+ * Layout versions of the storage records.
+ *
+ * <p>A tagged record is a list whose first element is a single byte with the high bit set, holding the
+ * layout version in the low bits. Read as an integer the tag is negative, and no earlier layout starts
+ * with a negative integer, a one-byte string with the high bit set or a 21-byte address, so records
+ * written before the tags were introduced read as version 0 and keep their first field.
+ *
+ * <p>Readers decode every version; writers always use the latest one, so a record is upgraded
+ * the next time it is stored.
+ */
+public final class RecordVersion {
+    public static final int UNTAGGED = 0;
+    private static final int TAG_BIT = 0x80;
+
+    private RecordVersion() {
+    }
+
+    public static byte[] tag(int version) {
+        return new byte[]{(byte) (TAG_BIT | version)};
+    }
+
+    /**
+     * Returns the version of a record from its first element, read as bytes.
+     */
+    public static int of(byte[] first) {
+        return first.length == 1 && (first[0] & TAG_BIT) != 0 ? first[0] & ~TAG_BIT & 0xff : UNTAGGED;
+    }
+
+    // the first field of an untagged record, read as bytes to look for a tag
+    static long toLong(byte[] first) {
+        return first.length == 0 ? 0 : new BigInteger(first).longValue();
+    }
+}
@@ -20,6 +20,10 @@ import score.Address;
 import score.Context;
 
 import java.math.BigInteger;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
 
 public class TokenProxy {
     public static final String IRC2 = "irc-2";
@@ -43,4 +47,47 @@ public class TokenProxy {
             return Context.call(BigInteger.class, address, "balanceOf", holder, id);
         }
     }
+
+    // Each distinct holder is looked up once, however many times it appears. IRC-31 tokens answer all of them
+    // in one call; IRC-2 has no batch query, so it is one call per distinct holder.
+    public BigInteger[] balanceOf(Address[] holders) {
+        BigInteger[] balances = new BigInteger[holders.length];
+        if (holders.length == 0) {
+            return balances;
+        }
+        // holder => its position in `unique`
+        Map<Address, Integer> positions = new HashMap<>();
+        List<Address> unique = new ArrayList<>();
+        int[] slots = new int[holders.length];
+        for (int i = 0; i < holders.length; i++) {
+            var position = positions.get(holders[i]);
+            if (position == null) {
+                position = unique.size();
+                positions.put(holders[i], position);
+                unique.add(holders[i]);
+            }
+            slots[i] = position;
+        }
+
+        BigInteger[] found = new BigInteger[unique.size()];
+        if (IRC2.equals(type)) {
+            for (int i = 0; i < found.length; i++) {
+                found[i] = balanceOf(unique.get(i));
+            }
+        } else {
+            BigInteger[] ids = new BigInteger[found.length];
+            for (int i = 0; i < ids.length; i++) {
+                ids[i] = id;
+            }
+            List<?> result = Context.call(List.class, address, "balanceOfBatch", unique.toArray(new Address[0]), ids);
+            Context.require(result.size() == found.length, "InvalidBalanceOfBatch");
+            for (int i = 0; i < found.length; i++) {
+                found[i] = (BigInteger) result.get(i);
+            }
+        }
+        for (int i = 0; i < holders.length; i++) {
+            balances[i] = found[slots[i]];
+        }
+        return balances;
+    }
 }
@@ -22,32 +22,49 @@ import score.ObjectWriter;
 import java.math.BigInteger;
 
 public class TokenVote {
-    private final String vote;
+    // 1: tagged [choice byte, amount]; 0: [choice byte or name, amount]
+    public static final int LAYOUT = 1;
+
+    private final int choice;
     private final BigInteger amount;
+    private int layout = LAYOUT;
 
     public TokenVote(String vote, BigInteger amount) {
-        this.vote = vote;
+        this(Votes.choiceOf(vote), amount);
+    }
+
+    public TokenVote(int choice, BigInteger amount) {
+        this.choice = choice;
         this.amount = amount;
     }
 
-    public String getVote() {
-        return vote;
+    public int getChoice() {
+        return choice;
     }
 
     public BigInteger getAmount() {
         return amount;
     }
 
+    public boolean needsUpgrade() {
+        return layout < LAYOUT;
+    }
+
     public static void writeObject(ObjectWriter w, TokenVote v) {
-        w.writeListOf(v.vote, v.amount);
+        w.writeListOf(RecordVersion.tag(LAYOUT), (byte) v.choice, v.amount);
     }
 
     public static TokenVote readObject(ObjectReader r) {
         r.beginList();
+        byte[] first = r.readByteArray();
+        int layout = RecordVersion.of(first);
+        // untagged records store the choice by its name, or in the first element
+        byte[] choice = layout == RecordVersion.UNTAGGED ? first : r.readByteArray();
         TokenVote v = new TokenVote(
-                r.readString(),
+                choice.length > 1 ? Votes.choiceOf(new String(choice)) : (choice.length == 0 ? 0 : choice[0]),
                 r.readBigInteger()
         );
+        v.layout = layout;
         r.end();
         return v;
     }
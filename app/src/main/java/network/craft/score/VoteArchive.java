@@ -0,0 +1,123 @@
+/*
+ * Copyright 2022 Craft Network
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package network.craft.score;
+
+import score.ObjectReader;
+import score.ObjectWriter;
+
+/**
+ * The Merkle root of the votes of a proposal, accumulated over several transactions.
+ *
+ * <p>The leaves are the votes in the order of the voter registry. Nodes are paired from the left and an
+ * odd last node is carried up as is, like in the snapshot trees. While the archival is in progress the
+ * record holds the frontier: the root of the last complete subtree of each height, at most one per bit
+ * of the number of leaves added. Once all the votes are added only the root and the count remain.
+ */
+public class VoteArchive {
+    private final int voters;
+    private int count;
+    private byte[][] frontier;
+    private byte[] root;
+
+    public VoteArchive(int voters) {
+        this(voters, 0, new byte[0][], null);
+    }
+
+    private VoteArchive(int voters, int count, byte[][] frontier, byte[] root) {
+        this.voters = voters;
+        this.count = count;
+        this.frontier = frontier;
+        this.root = root;
+    }
+
+    public int getVoters() {
+        return voters;
+    }
+
+    public int getCount() {
+        return count;
+    }
+
+    public boolean isComplete() {
+        return root != null;
+    }
+
+    public byte[] getRoot() {
+        return root;
+    }
+
+    public void add(byte[] leaf) {
+        byte[] node = leaf;
+        int height = 0;
+        for (; height < frontier.length && frontier[height] != null; height++) {
+            node = MerkleProof.node(frontier[height], node);
+            frontier[height] = null;
+        }
+        if (height == frontier.length) {
+            byte[][] grown = new byte[height + 1][];
+            System.arraycopy(frontier, 0, grown, 0, height);
+            frontier = grown;
+        }
+        frontier[height] = node;
+        if (++count == voters) {
+            complete();
+        }
+    }
+
+    // folds the subtrees from the lowest, which is what carrying up the odd nodes amounts to
+    private void complete() {
+        byte[] node = null;
+        for (byte[] subtree : frontier) {
+            if (subtree != null) {
+                node = node == null ? subtree : MerkleProof.node(subtree, node);
+            }
+        }
+        root = node;
+        frontier = new byte[0][];
+    }
+
+    public static void writeObject(ObjectWriter w, VoteArchive a) {
+        w.beginList(4);
+        w.write(a.voters);
+        w.write(a.count);
+        w.writeNullable(a.root);
+        w.beginList(a.frontier.length);
+        for (byte[] subtree : a.frontier) {
+            w.writeNullable(subtree);
+        }
+        w.end();
+        w.end();
+    }
+
+    public static VoteArchive readObject(ObjectReader r) {
+        r.beginList();
+        int voters = r.readInt();
+        int count = r.readInt();
+        byte[] root = r.readNullable(byte[].class);
+        r.beginList();
+        byte[][] frontier = new byte[0][];
+        while (r.hasNext()) {
+            byte[][] grown = new byte[frontier.length + 1][];
+            System.arraycopy(frontier, 0, grown, 0, frontier.length);
+            grown[frontier.length] = r.readNullable(byte[].class);
+            frontier = grown;
+        }
+        r.end();
+        r.end();
+        return new VoteArchive(voters, count, frontier, root);
+    }
+}
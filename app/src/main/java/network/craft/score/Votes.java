@@ -16,77 +16,183 @@
 
 package network.craft.score;
 
-import score.Context;
 import score.ObjectReader;
 import score.ObjectWriter;
 
 import java.math.BigInteger;
 import java.util.List;
 
+/**
+ * The tally of a proposal, one voting power per choice, indexed by the choice.
+ *
+ * <p>A proposal either uses the for/against/abstain preset, whose choices are named, or up to
+ * {@link #MAX_CHOICES} choices named by their index in decimal.
+ */
 public class Votes {
     private static final String FOR = "for";
     private static final String AGAINST = "against";
     private static final String ABSTAIN = "abstain";
-    private static final List<String> VALID_VOTES = List.of(Votes.FOR, Votes.AGAINST, Votes.ABSTAIN);
+    private static final String[] PRESET = {FOR, AGAINST, ABSTAIN};
+
+    public static final int CHOICE_FOR = 0;
+    public static final int CHOICE_AGAINST = 1;
+    public static final int CHOICE_ABSTAIN = 2;
+    public static final int MIN_CHOICES = 2;
+    public static final int MAX_CHOICES = 16;
 
-    private BigInteger _for;
-    private BigInteger _against;
-    private BigInteger _abstain;
+    private final BigInteger[] tallies;
+    private final boolean preset;
 
     public Votes() {
         this(BigInteger.ZERO, BigInteger.ZERO, BigInteger.ZERO);
     }
 
     public Votes(BigInteger _for, BigInteger _against, BigInteger _abstain) {
-        this._for = _for;
-        this._against = _against;
-        this._abstain = _abstain;
+        this(new BigInteger[]{_for, _against, _abstain}, true);
+    }
+
+    // a multi-choice tally
+    public Votes(int choices) {
+        this(zeros(choices), false);
     }
 
-    public static boolean isValid(String vote) {
-        return VALID_VOTES.contains(vote);
+    private Votes(BigInteger[] tallies, boolean preset) {
+        this.tallies = tallies;
+        this.preset = preset;
     }
 
-    public void increase(String vote, BigInteger balance) {
+    private static BigInteger[] zeros(int count) {
+        var tallies = new BigInteger[count];
+        for (int i = 0; i < count; i++) {
+            tallies[i] = BigInteger.ZERO;
+        }
+        return tallies;
+    }
+
+    // the choice of a preset vote name, or -1
+    public static int choiceOf(String vote) {
         switch (vote) {
             case FOR:
-                _for = balance.add(_for);
-                break;
+                return CHOICE_FOR;
             case AGAINST:
-                _against = balance.add(_against);
-                break;
+                return CHOICE_AGAINST;
             case ABSTAIN:
-                _abstain = balance.add(_abstain);
-                break;
+                return CHOICE_ABSTAIN;
             default:
-                Context.revert("InvalidVoteType");
+                return -1;
+        }
+    }
+
+    public static String nameOf(int choice) {
+        return PRESET[choice];
+    }
+
+    public boolean isPreset() {
+        return preset;
+    }
+
+    public int getChoices() {
+        return tallies.length;
+    }
+
+    /**
+     * Returns the choice named `vote` in this tally: a preset name, or the index of the choice in decimal.
+     *
+     * @return the choice, or -1 if there is no such choice
+     */
+    public int choiceIndex(String vote) {
+        if (preset) {
+            return choiceOf(vote);
+        }
+        int length = vote.length();
+        if (length == 0 || length > 2 || (length == 2 && vote.charAt(0) == '0')) {
+            return -1;
+        }
+        int choice = 0;
+        for (int i = 0; i < length; i++) {
+            char c = vote.charAt(i);
+            if (c < '0' || c > '9') {
+                return -1;
+            }
+            choice = choice * 10 + (c - '0');
         }
+        return choice < tallies.length ? choice : -1;
+    }
+
+    public String choiceName(int choice) {
+        return preset ? nameOf(choice) : Integer.toString(choice);
+    }
+
+    public void increase(int choice, BigInteger balance) {
+        tallies[choice] = tallies[choice].add(balance);
+    }
+
+    public void decrease(int choice, BigInteger balance) {
+        tallies[choice] = tallies[choice].subtract(balance);
+    }
+
+    public BigInteger getTally(int choice) {
+        return choice < tallies.length ? tallies[choice] : BigInteger.ZERO;
+    }
+
+    public List<BigInteger> getTallies() {
+        return List.of(tallies);
     }
 
     public BigInteger getFor() {
-        return _for;
+        return getTally(CHOICE_FOR);
     }
 
     public BigInteger getAgainst() {
-        return _against;
+        return getTally(CHOICE_AGAINST);
     }
 
     public BigInteger getAbstain() {
-        return _abstain;
+        return getTally(CHOICE_ABSTAIN);
     }
 
+    public BigInteger getTotal() {
+        var total = BigInteger.ZERO;
+        for (BigInteger tally : tallies) {
+            total = total.add(tally);
+        }
+        return total;
+    }
+
+    // Trailing zero tallies are dropped, so a fresh or one-sided tally shrinks to its non-zero prefix.
+    // A zero in the middle costs a single byte, which is less than any bitmask header would.
+    // A multi-choice tally starts with its number of choices, negated: no tally is ever negative,
+    // so the preset keeps its layout and the records written before multi-choice proposals still read.
     public static void writeObject(ObjectWriter w, Votes v) {
-        w.writeListOf(v._for, v._against, v._abstain);
+        int count = v.tallies.length;
+        while (count > 0 && v.tallies[count - 1].signum() == 0) {
+            count--;
+        }
+        if (v.preset) {
+            w.beginList(count);
+        } else {
+            w.beginList(count + 1);
+            w.write(-v.tallies.length);
+        }
+        for (int i = 0; i < count; i++) {
+            w.write(v.tallies[i]);
+        }
+        w.end();
     }
 
     public static Votes readObject(ObjectReader r) {
         r.beginList();
-        Votes v = new Votes(
-                r.readBigInteger(),
-                r.readBigInteger(),
-                r.readBigInteger()
-        );
+        BigInteger first = r.hasNext() ? r.readBigInteger() : BigInteger.ZERO;
+        boolean preset = first.signum() >= 0;
+        var tallies = zeros(preset ? PRESET.length : -first.intValue());
+        int i = 0;
+        if (preset) {
+            tallies[i++] = first;
+        }
+        for (; i < tallies.length && r.hasNext(); i++) {
+            tallies[i] = r.readBigInteger();
+        }
         r.end();
-        return v;
+        return new Votes(tallies, preset);
     }
 }
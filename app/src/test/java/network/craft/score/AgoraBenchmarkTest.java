@@ -0,0 +1,243 @@
+/*
+ * Copyright 2022 Craft Network
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package network.craft.score;
+
+import com.iconloop.score.test.Account;
+import com.iconloop.score.test.Score;
+import com.iconloop.score.test.ServiceManager;
+import com.iconloop.score.test.TestBase;
+import org.junit.jupiter.api.AfterAll;
+import org.junit.jupiter.api.Tag;
+import org.junit.jupiter.api.Test;
+import score.Address;
+
+import java.io.IOException;
+import java.io.Reader;
+import java.io.Writer;
+import java.math.BigInteger;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.Properties;
+import java.util.TreeMap;
+
+import static network.craft.score.StorageMeter.Footprint;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * Step-cost and storage-footprint regression suite for the {@link AgoraImpl} externals.
+ *
+ * <p>The unit-test {@link ServiceManager} does not meter steps, so each measured call goes through a
+ * {@link StorageMeter}, which records the storage accesses, inter-SCORE calls and event logs the call
+ * actually makes and prices them with the ICON step schedule. Value sizes come from the real
+ * {@code writeObject} codecs, so any change to a record layout or an access pattern shows up in the numbers.
+ *
+ * <p>Run with {@code ./gradlew app:benchmark}. Results are written to {@code benchmark.output} and compared
+ * with the committed {@code benchmark.baseline}; a run fails when a metric grows by more than
+ * {@code benchmark.tolerance} percent. {@code -PupdateBaseline} records a new baseline.
+ */
+@Tag("benchmark")
+class AgoraBenchmarkTest extends TestBase {
+    private static final ServiceManager sm = getServiceManager();
+    private static final Account owner = sm.createAccount();
+    private static final long BLOCK_INTERVAL = 2_000_000;
+    private static final BigInteger TOKEN_ID = BigInteger.ONE;
+    private static final BigInteger NID = BigInteger.ONE;
+    private static final String IPFS_HASH = "QmYwAPJzv5CZsnA625s3Xf2nemtYgPpHdWEz79ojWnPbdG";
+
+    private static final Map<String, Long> results = new TreeMap<>();
+
+    private String tokenType;
+    private Score tokenScore;
+    private Score agoraScore;
+    private StorageMeter meter;
+
+    private static int[] sizes() {
+        var spec = System.getProperty("benchmark.sizes", "1,100,10000").split(",");
+        var sizes = new int[spec.length];
+        for (int i = 0; i < spec.length; i++) {
+            sizes[i] = Integer.parseInt(spec[i].trim());
+        }
+        return sizes;
+    }
+
+    private void deploy() throws Exception {
+        deploy(TokenProxy.IRC2);
+    }
+
+    private void deploy(String tokenType) throws Exception {
+        this.tokenType = tokenType;
+        var supply = ICX.multiply(BigInteger.valueOf(1_000_000));
+        if (TokenProxy.IRC2.equals(tokenType)) {
+            tokenScore = sm.deploy(owner, StorageMeter.MeteredIRC2Token.class, supply);
+        } else {
+            tokenScore = sm.deploy(owner, StorageMeter.MeteredIRC31Token.class, TOKEN_ID, supply);
+        }
+        meter = StorageMeter.deploy(sm, owner);
+        agoraScore = meter.getScore();
+        agoraScore.invoke(owner, "setGovernanceToken", tokenScore.getAddress(), tokenType, TOKEN_ID);
+        agoraScore.invoke(owner, "setNetworkId", NID);
+    }
+
+    private void fund(Address holder, BigInteger amount) {
+        if (TokenProxy.IRC2.equals(tokenType)) {
+            tokenScore.invoke(owner, "transfer", holder, amount, "".getBytes());
+        } else {
+            tokenScore.invoke(owner, "transferFrom", owner.getAddress(), holder, TOKEN_ID, amount, null);
+        }
+    }
+
+    private static BigInteger endTime() {
+        return BigInteger.valueOf(sm.getBlock().getTimestamp() + 2 * AgoraImpl.DAY_IN_MICROSECONDS.longValue());
+    }
+
+    private static void advance(long micros) {
+        sm.getBlock().increase(micros / BLOCK_INTERVAL + 1);
+    }
+
+    private void record(String call, int sweep, Footprint fp) {
+        results.put(call + "." + sweep + ".steps", fp.getSteps());
+        results.put(call + "." + sweep + ".bytes", fp.getBytesWritten());
+    }
+
+    private BigInteger submit(Account creator) {
+        agoraScore.invoke(creator, "submitProposal", endTime(), IPFS_HASH, null, null);
+        return (BigInteger) agoraScore.call("lastProposalId");
+    }
+
+    @Test
+    void proposalLifecycle() throws Exception {
+        for (int count : sizes()) {
+            deploy();
+            for (int i = 1; i < count; i++) {
+                submit(owner);
+            }
+            record("submitProposal", count, meter.invoke(owner, "submitProposal", endTime(), IPFS_HASH, null, null));
+            var pid = (BigInteger) agoraScore.call("lastProposalId");
+            record("cancelProposal", count, meter.invoke(owner, "cancelProposal", pid));
+
+            var closing = count > 1 ? pid.subtract(BigInteger.ONE) : submit(owner);
+            advance(2 * AgoraImpl.DAY_IN_MICROSECONDS.longValue());
+            record("closeProposal", count, meter.invoke(owner, "closeProposal", closing));
+        }
+    }
+
+    @Test
+    void voteSweep() throws Exception {
+        for (int count : sizes()) {
+            deploy();
+            var pid = submit(owner);
+            var stake = ICX.multiply(BigInteger.TEN);
+            Footprint last = null;
+            for (int i = 0; i < count; i++) {
+                var voter = sm.createAccount();
+                tokenScore.invoke(owner, "transfer", voter.getAddress(), stake, "".getBytes());
+                if (i < count - 1) {
+                    agoraScore.invoke(voter, "vote", pid, "for");
+                } else {
+                    last = meter.invoke(voter, "vote", pid, "for");
+                }
+            }
+            record("vote", count, last);
+        }
+    }
+
+    // A full batch of relayed votes, whose balances take one call per voter on IRC-2 and a single one on IRC-31.
+    @Test
+    void signedVoteBatch() throws Exception {
+        for (int count : sizes()) {
+            int batch = Math.min(count, AgoraImpl.MAX_BATCH_SIZE);
+            Map<String, Footprint> byToken = new TreeMap<>();
+            for (String type : new String[]{TokenProxy.IRC2, TokenProxy.IRC31}) {
+                deploy(type);
+                var pid = submit(owner);
+                var pids = new BigInteger[batch];
+                var votes = new String[batch];
+                var nonces = new BigInteger[batch];
+                var signatures = new byte[batch][];
+                for (int i = 0; i < batch; i++) {
+                    var signer = new VoteSigner();
+                    fund(signer.getAddress(), ICX.multiply(BigInteger.TEN));
+                    pids[i] = pid;
+                    votes[i] = "for";
+                    nonces[i] = BigInteger.ZERO;
+                    signatures[i] = signer.sign(agoraScore.getAddress(), NID, pid, "for", BigInteger.ZERO);
+                }
+                var fp = meter.invoke(owner, "submitSignedVotes", pids, votes, nonces, signatures);
+                record("submitSignedVotes." + type, count, fp);
+                byToken.put(type, fp);
+            }
+            var perHolder = byToken.get(TokenProxy.IRC2);
+            var batched = byToken.get(TokenProxy.IRC31);
+            assertEquals(batch, perHolder.getCalls());
+            assertEquals(1, batched.getCalls());
+            if (batch > 1) {
+                assertTrue(batched.getSteps() < perHolder.getSteps());
+            }
+        }
+    }
+
+    @AfterAll
+    static void compareWithBaseline() throws IOException {
+        var output = Path.of(System.getProperty("benchmark.output", "build/benchmark/step-costs.properties"));
+        var baselinePath = Path.of(System.getProperty("benchmark.baseline", "benchmark/step-baseline.properties"));
+        var tolerance = Double.parseDouble(System.getProperty("benchmark.tolerance", "5"));
+
+        store(output, results);
+        if (Boolean.getBoolean("benchmark.updateBaseline") || !Files.exists(baselinePath)) {
+            store(baselinePath, results);
+            System.out.println("Recorded step-cost baseline at " + baselinePath);
+            return;
+        }
+
+        var baseline = new Properties();
+        try (Reader r = Files.newBufferedReader(baselinePath, StandardCharsets.UTF_8)) {
+            baseline.load(r);
+        }
+        List<String> regressions = new ArrayList<>();
+        for (var e : results.entrySet()) {
+            var expected = baseline.getProperty(e.getKey());
+            if (expected == null) {
+                continue;
+            }
+            long base = Long.parseLong(expected);
+            long actual = e.getValue();
+            double growth = base == 0 ? (actual == 0 ? 0 : Double.POSITIVE_INFINITY) : (actual - base) * 100.0 / base;
+            System.out.printf("%-32s %12d -> %12d (%+.2f%%)%n", e.getKey(), base, actual, growth);
+            if (growth > tolerance) {
+                regressions.add(e.getKey() + ": " + base + " -> " + actual);
+            }
+        }
+        assertTrue(regressions.isEmpty(), () -> "Exceeded " + tolerance + "% over baseline: " + regressions);
+    }
+
+    private static void store(Path path, Map<String, Long> values) throws IOException {
+        if (path.getParent() != null) {
+            Files.createDirectories(path.getParent());
+        }
+        try (Writer w = Files.newBufferedWriter(path, StandardCharsets.UTF_8)) {
+            w.write("# <call>.<sweep size>.<steps|bytes>\n");
+            for (var e : values.entrySet()) {
+                w.write(e.getKey() + "=" + e.getValue() + "\n");
+            }
+        }
+    }
+}
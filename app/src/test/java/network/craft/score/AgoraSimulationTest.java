@@ -0,0 +1,212 @@
+/*
+ * Copyright 2022 Craft Network
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package network.craft.score;
+
+import com.iconloop.score.test.Account;
+import com.iconloop.score.test.Score;
+import com.iconloop.score.test.ServiceManager;
+import com.iconloop.score.test.TestBase;
+import org.junit.jupiter.api.Tag;
+import org.junit.jupiter.api.Test;
+
+import java.io.IOException;
+import java.io.Writer;
+import java.math.BigInteger;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+import java.util.TreeMap;
+
+import static network.craft.score.StorageMeter.Footprint;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+/**
+ * Scale simulation of {@link AgoraImpl}: a large population of holders voting on many proposals whose
+ * lifecycles overlap, driven by a seeded generator so that two runs with the same parameters are identical.
+ *
+ * <p>Proposals are submitted in rounds of {@code simulation.concurrency}; a few are canceled, the others
+ * receive {@code simulation.votes} votes each on average, interleaved across the round and including
+ * changed votes. Each round ends with {@code closeExpired} sweeps once every proposal has ended.
+ *
+ * <p>Run with {@code ./gradlew app:simulation}. Every operation goes through a {@link StorageMeter}; for each
+ * operation type the report gives the number of calls, the time spent in the unit-test {@link ServiceManager},
+ * and the steps and the bytes of the entries added to the state measured from the storage accesses.
+ * It is printed and written to {@code simulation.output}.
+ */
+@Tag("simulation")
+class AgoraSimulationTest extends TestBase {
+    private static final ServiceManager sm = getServiceManager();
+    private static final Account owner = sm.createAccount();
+    private static final long BLOCK_INTERVAL = 2_000_000;
+    private static final long DAY = AgoraImpl.DAY_IN_MICROSECONDS.longValue();
+    private static final String[] CHOICES = {"for", "against", "abstain"};
+    private static final String IPFS_HASH = "QmYwAPJzv5CZsnA625s3Xf2nemtYgPpHdWEz79ojWnPbdG";
+
+    private final Map<String, OpStats> stats = new TreeMap<>();
+    private Score tokenScore;
+    private Score agoraScore;
+    private StorageMeter meter;
+
+    static class OpStats {
+        long count;
+        long nanos;
+        long steps;
+        long maxSteps;
+        long bytesAdded;
+
+        void add(Footprint fp) {
+            count++;
+            nanos += fp.getNanos();
+            steps += fp.getSteps();
+            maxSteps = Math.max(maxSteps, fp.getSteps());
+            bytesAdded += fp.getBytesAdded();
+        }
+    }
+
+    private void record(String op, Footprint fp) {
+        stats.computeIfAbsent(op, k -> new OpStats()).add(fp);
+    }
+
+    private static void advance(long micros) {
+        sm.getBlock().increase(micros / BLOCK_INTERVAL + 1);
+    }
+
+    private int count(String method, Object... params) {
+        return ((BigInteger) agoraScore.call(method, params)).intValue();
+    }
+
+    private boolean hasVoted(Account voter, BigInteger pid) {
+        return !((Map<?, ?>) agoraScore.call("getVote", voter.getAddress(), pid)).isEmpty();
+    }
+
+    @Test
+    void simulate() throws Exception {
+        int voterCount = Integer.getInteger("simulation.voters", 100_000);
+        int proposalCount = Integer.getInteger("simulation.proposals", 1_000);
+        int votesPerProposal = Integer.getInteger("simulation.votes", 100);
+        int concurrency = Integer.getInteger("simulation.concurrency", 20);
+        var random = new Random(Long.getLong("simulation.seed", 42L));
+
+        long started = System.nanoTime();
+        tokenScore = sm.deploy(owner, StorageMeter.MeteredIRC2Token.class, ICX.multiply(BigInteger.valueOf(2_000_000_000L)));
+        meter = StorageMeter.deploy(sm, owner);
+        agoraScore = meter.getScore();
+        agoraScore.invoke(owner, "setGovernanceToken", tokenScore.getAddress(), "irc-2", BigInteger.ZERO);
+
+        List<Account> voters = new ArrayList<>(voterCount);
+        for (int i = 0; i < voterCount; i++) {
+            var voter = sm.createAccount();
+            var balance = ICX.multiply(BigInteger.valueOf(1 + random.nextInt(10_000)));
+            tokenScore.invoke(owner, "transfer", voter.getAddress(), balance, "".getBytes());
+            voters.add(voter);
+        }
+        System.out.printf("funded %d holders in %.1fs%n", voterCount, (System.nanoTime() - started) / 1e9);
+
+        int submitted = 0;
+        int canceled = 0;
+        int closed = 0;
+        long bytesAdded = 0;
+        while (submitted < proposalCount) {
+            int round = Math.min(concurrency, proposalCount - submitted);
+            List<BigInteger> open = new ArrayList<>();
+            for (int i = 0; i < round; i++, submitted++) {
+                var creator = voters.get(random.nextInt(voterCount));
+                var endTime = BigInteger.valueOf(sm.getBlock().getTimestamp() + (2 + random.nextInt(5)) * DAY);
+                record("submitProposal", meter.invoke(creator, "submitProposal", endTime, IPFS_HASH, null, null));
+                var pid = (BigInteger) agoraScore.call("lastProposalId");
+
+                if (random.nextInt(50) == 0) {
+                    record("cancelProposal", meter.invoke(creator, "cancelProposal", pid));
+                    canceled++;
+                } else {
+                    open.add(pid);
+                }
+            }
+
+            for (int i = open.size() * votesPerProposal; i > 0; i--) {
+                var pid = open.get(random.nextInt(open.size()));
+                var voter = voters.get(random.nextInt(voterCount));
+                var choice = CHOICES[random.nextInt(CHOICES.length)];
+                var op = hasVoted(voter, pid) ? "vote.changed" : "vote";
+                record(op, meter.invoke(voter, "vote", pid, choice));
+            }
+
+            advance(7 * DAY);
+            closed += sweep();
+            bytesAdded = 0;
+            for (var s : stats.values()) {
+                bytesAdded += s.bytesAdded;
+            }
+            System.out.printf("%d/%d proposals, %d votes, %.1f MB added, %.1fs%n", submitted, proposalCount,
+                    stats.containsKey("vote") ? stats.get("vote").count : 0, bytesAdded / 1e6, (System.nanoTime() - started) / 1e9);
+        }
+
+        assertEquals(0, count("getProposalCount", "active"));
+        assertEquals(closed, count("getProposalCount", "closed"));
+        assertEquals(canceled, count("getProposalCount", "canceled"));
+        assertEquals(proposalCount, closed + canceled);
+        long votes = 0;
+        for (String op : new String[]{"vote", "vote.changed"}) {
+            votes += stats.containsKey(op) ? stats.get(op).count : 0;
+        }
+        assertEquals(votes, ((Map<?, ?>) agoraScore.call("getStats")).get("_votes"));
+        report(bytesAdded);
+    }
+
+    // Closes every ended proposal with closeExpired, counting the proposals each call closed.
+    private int sweep() {
+        var limit = BigInteger.valueOf(AgoraImpl.MAX_BATCH_SIZE);
+        int closed = 0;
+        int active;
+        while ((active = count("getProposalCount", "active")) > 0) {
+            record("closeExpired", meter.invoke(owner, "closeExpired", limit));
+            closed += active - count("getProposalCount", "active");
+        }
+        return closed;
+    }
+
+    private void report(long bytesAdded) throws IOException {
+        var output = Path.of(System.getProperty("simulation.output", "build/simulation/report.properties"));
+        if (output.getParent() != null) {
+            Files.createDirectories(output.getParent());
+        }
+        long totalSteps = 0;
+        System.out.printf("%-16s %9s %10s %10s %14s %10s %10s %12s%n",
+                "operation", "calls", "total ms", "mean us", "total steps", "mean", "max", "bytes added");
+        try (Writer w = Files.newBufferedWriter(output, StandardCharsets.UTF_8)) {
+            w.write("# <operation>.<calls|nanos|steps|maxSteps|bytesAdded>\n");
+            for (var e : stats.entrySet()) {
+                var s = e.getValue();
+                totalSteps += s.steps;
+                System.out.printf("%-16s %9d %10d %10.1f %14d %10d %10d %12d%n", e.getKey(), s.count,
+                        s.nanos / 1_000_000, s.nanos / 1e3 / s.count, s.steps, s.steps / s.count, s.maxSteps, s.bytesAdded);
+                w.write(e.getKey() + ".calls=" + s.count + "\n");
+                w.write(e.getKey() + ".nanos=" + s.nanos + "\n");
+                w.write(e.getKey() + ".steps=" + s.steps + "\n");
+                w.write(e.getKey() + ".maxSteps=" + s.maxSteps + "\n");
+                w.write(e.getKey() + ".bytesAdded=" + s.bytesAdded + "\n");
+            }
+            w.write("total.steps=" + totalSteps + "\n");
+            w.write("total.bytesAdded=" + bytesAdded + "\n");
+        }
+        System.out.printf("total: %d steps, %d bytes added to the state%n", totalSteps, bytesAdded);
+    }
+}
@@ -23,26 +23,186 @@ import com.iconloop.score.test.TestBase;
 import com.iconloop.score.token.irc2.IRC2Basic;
 import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.Test;
+import score.Address;
+import score.BranchDB;
 import score.Context;
+import score.DictDB;
+import score.ObjectWriter;
+import score.annotation.External;
+import score.annotation.Optional;
 
+import java.io.IOException;
+import java.io.StringReader;
 import java.math.BigInteger;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
 import java.util.Map;
 
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
 import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNull;
 import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
 
 class AgoraUnitTest extends TestBase {
     private static final ServiceManager sm = getServiceManager();
     private static final Account owner = sm.createAccount();
     private static final Account alice = sm.createAccount();
+    private static final BigInteger NID = BigInteger.ONE;
     private Score tokenScore;
     private Score agoraScore;
 
     public static class IRC2TestToken extends IRC2Basic {
+        static int balanceOfCalls;
+
         public IRC2TestToken(BigInteger initialSupply) {
             super("TestToken", "TST", 18);
             _mint(Context.getCaller(), initialSupply);
         }
+
+        @Override
+        @External(readonly=true)
+        public BigInteger balanceOf(Address _owner) {
+            balanceOfCalls++;
+            return super.balanceOf(_owner);
+        }
+    }
+
+    /**
+     * A single-id IRC-31 token that counts its {@code balanceOfBatch} calls.
+     */
+    public static class IRC31TestToken {
+        static int balanceOfBatchCalls;
+        // holders of the last balanceOfBatch call
+        static int balanceOfBatchSize;
+        private final BigInteger id;
+        private final DictDB<Address, BigInteger> balances = Context.newDictDB("balances", BigInteger.class);
+
+        public IRC31TestToken(BigInteger id, BigInteger initialSupply) {
+            this.id = id;
+            balances.set(Context.getCaller(), initialSupply);
+        }
+
+        private BigInteger balance(Address owner, BigInteger id) {
+            return this.id.equals(id) ? balances.getOrDefault(owner, BigInteger.ZERO) : BigInteger.ZERO;
+        }
+
+        @External(readonly=true)
+        public BigInteger balanceOf(Address _owner, BigInteger _id) {
+            return balance(_owner, _id);
+        }
+
+        @External(readonly=true)
+        public List<BigInteger> balanceOfBatch(Address[] _owners, BigInteger[] _ids) {
+            balanceOfBatchCalls++;
+            balanceOfBatchSize = _owners.length;
+            var result = new BigInteger[_owners.length];
+            for (int i = 0; i < _owners.length; i++) {
+                result[i] = balance(_owners[i], _ids[i]);
+            }
+            return List.of(result);
+        }
+
+        @External
+        public void transferFrom(Address _from, Address _to, BigInteger _id, BigInteger _value, @Optional byte[] _data) {
+            Context.require(Context.getCaller().equals(_from) && id.equals(_id), "NotAllowed");
+            var balance = balance(_from, _id);
+            Context.require(balance.compareTo(_value) >= 0, "InsufficientBalance");
+            balances.set(_from, balance.subtract(_value));
+            balances.set(_to, balance(_to, _id).add(_value));
+        }
+    }
+
+    /**
+     * Writes its fields as a plain list, the way records were stored before the layout tags.
+     */
+    public static class UntaggedRecord {
+        private final Object[] fields;
+
+        public UntaggedRecord(Object... fields) {
+            this.fields = fields;
+        }
+
+        public static void writeObject(ObjectWriter w, UntaggedRecord r) {
+            w.beginList(r.fields.length);
+            for (Object f : r.fields) {
+                if (f instanceof Votes) {
+                    Votes.writeObject(w, (Votes) f);
+                } else {
+                    w.write(f);
+                }
+            }
+            w.end();
+        }
+    }
+
+    /**
+     * Agora with access to its raw storage, to set up deployments written by earlier releases.
+     */
+    public static class LegacyAgoraScore extends AgoraImpl {
+        @External
+        public void seedLegacyConfig(Address token, String type, BigInteger id, BigInteger threshold) {
+            Context.newVarDB("token_address", Address.class).set(token);
+            Context.newVarDB("token_type", String.class).set(type);
+            Context.newVarDB("token_id", BigInteger.class).set(id);
+            Context.newVarDB("minimum_threshold", BigInteger.class).set(threshold);
+        }
+
+        @External(readonly=true)
+        public Map<String, Object> getLegacyConfig() {
+            var config = new HashMap<String, Object>();
+            config.put("token_address", Context.newVarDB("token_address", Address.class).get());
+            config.put("token_type", Context.newVarDB("token_type", String.class).get());
+            config.put("token_id", Context.newVarDB("token_id", BigInteger.class).get());
+            config.put("minimum_threshold", Context.newVarDB("minimum_threshold", BigInteger.class).get());
+            return config;
+        }
+
+        // stores a proposal in the records used before the state and info split, as the next id
+        @External
+        public void submitLegacyProposal(Address creator, long startTime, long endTime) {
+            var ids = Context.newVarDB("proposal_id", BigInteger.class);
+            var pid = ids.getOrDefault(BigInteger.ZERO).add(BigInteger.ONE);
+            Context.newDictDB("proposals", Proposal.class).set(pid,
+                    new Proposal(creator, startTime, endTime, "legacyIpfsHash", Proposal.STATUS_ACTIVE));
+            ids.set(pid);
+        }
+
+        // rewrites the state, the info and a vote of the proposal without their layout tags
+        @External
+        public void untagRecords(BigInteger pid, Address voter) {
+            var state = Context.newDictDB("proposal_state", ProposalState.class).get(pid);
+            Context.newDictDB("proposal_state", UntaggedRecord.class).set(pid, new UntaggedRecord(
+                    // the status takes the low 4 bits of the header
+                    state.getEndTime() << 4 | state.getStatus(), state.getVotes(), state.getVersion()));
+            var info = Context.newDictDB("proposal_info", ProposalInfo.class).get(pid);
+            Context.newDictDB("proposal_info", UntaggedRecord.class).set(pid, new UntaggedRecord(
+                    info.getCreator(), info.getStartTime(), info.getIpfsHash()));
+            var vote = tokenVotes(TokenVote.class).at(pid).get(voter);
+            tokenVotes(UntaggedRecord.class).at(pid).set(voter, new UntaggedRecord(
+                    (byte) vote.getChoice(), vote.getAmount()));
+        }
+
+        @External(readonly=true)
+        public Map<String, Object> getRecordUpgrades(BigInteger pid, Address voter) {
+            return Map.of(
+                    "state", Context.newDictDB("proposal_state", ProposalState.class).get(pid).needsUpgrade(),
+                    "info", Context.newDictDB("proposal_info", ProposalInfo.class).get(pid).needsUpgrade(),
+                    "vote", tokenVotes(TokenVote.class).at(pid).get(voter).needsUpgrade());
+        }
+
+        @External(readonly=true)
+        public BigInteger getDelegationOverride(BigInteger pid, Address delegate) {
+            return Context.<BigInteger, DictDB<Address, BigInteger>>newBranchDB("delegation_overrides",
+                    BigInteger.class).at(pid).get(delegate);
+        }
+
+        private static <V> BranchDB<BigInteger, DictDB<Address, V>> tokenVotes(Class<V> type) {
+            return Context.newBranchDB("token_votes", type);
+        }
     }
 
     @BeforeEach
@@ -51,6 +211,7 @@ class AgoraUnitTest extends TestBase {
         agoraScore = sm.deploy(owner, AgoraImpl.class);
         // set governance token
         agoraScore.invoke(owner, "setGovernanceToken", tokenScore.getAddress(), "irc-2", BigInteger.ZERO);
+        agoraScore.invoke(owner, "setNetworkId", NID);
         // transfer some token to Alice
         tokenScore.invoke(owner, "transfer", alice.getAddress(), ICX.multiply(BigInteger.valueOf(200)), "".getBytes());
     }
@@ -67,11 +228,71 @@ class AgoraUnitTest extends TestBase {
         );
     }
 
+    @Test
+    void governanceConfig() {
+        @SuppressWarnings("unchecked")
+        var info = (Map<String, Object>) agoraScore.call("governanceTokenInfo");
+        assertEquals(tokenScore.getAddress(), info.get("_address"));
+        assertEquals("irc-2", info.get("_type"));
+
+        agoraScore.invoke(owner, "setMinimumThreshold", ICX);
+        assertEquals(ICX, agoraScore.call("minimumThreshold"));
+        // the token set at deployment is still in place
+        assertEquals(info, agoraScore.call("governanceTokenInfo"));
+        // deployments that never used the legacy variables have nothing to migrate
+        assertThrows(AssertionError.class, () -> agoraScore.invoke(owner, "migrateConfig"));
+    }
+
+    @Test
+    @SuppressWarnings("unchecked")
+    void migrateLegacyConfig() throws Exception {
+        agoraScore = sm.deploy(owner, LegacyAgoraScore.class);
+        var tokenId = BigInteger.valueOf(7);
+        agoraScore.invoke(owner, "seedLegacyConfig", tokenScore.getAddress(), "irc-31", tokenId, ICX);
+        var info = Map.of("_address", tokenScore.getAddress(), "_type", "irc-31", "_id", tokenId);
+        // the legacy variables are read until they are migrated
+        assertEquals(info, agoraScore.call("governanceTokenInfo"));
+        assertEquals(ICX, agoraScore.call("minimumThreshold"));
+
+        assertThrows(AssertionError.class, () -> agoraScore.invoke(alice, "migrateConfig"));
+        agoraScore.invoke(owner, "migrateConfig");
+        assertEquals(info, agoraScore.call("governanceTokenInfo"));
+        assertEquals(ICX, agoraScore.call("minimumThreshold"));
+        var legacy = (Map<String, Object>) agoraScore.call("getLegacyConfig");
+        assertEquals(4, legacy.size());
+        for (var value : legacy.values()) {
+            assertNull(value);
+        }
+        assertThrows(AssertionError.class, () -> agoraScore.invoke(owner, "migrateConfig"));
+        assertThrows(AssertionError.class, () ->
+                agoraScore.invoke(owner, "setGovernanceToken", tokenScore.getAddress(), "irc-2", BigInteger.ZERO));
+    }
+
+    @Test
+    @SuppressWarnings("unchecked")
+    void setterMigratesLegacyConfig() throws Exception {
+        agoraScore = sm.deploy(owner, LegacyAgoraScore.class);
+        var tokenId = BigInteger.valueOf(7);
+        agoraScore.invoke(owner, "seedLegacyConfig", tokenScore.getAddress(), "irc-31", tokenId, ICX);
+
+        var threshold = ICX.multiply(BigInteger.TWO);
+        agoraScore.invoke(owner, "setMinimumThreshold", threshold);
+        var info = Map.of("_address", tokenScore.getAddress(), "_type", "irc-31", "_id", tokenId);
+        assertEquals(info, agoraScore.call("governanceTokenInfo"));
+        assertEquals(threshold, agoraScore.call("minimumThreshold"));
+        // the legacy variables go with the first write of the record
+        var legacy = (Map<String, Object>) agoraScore.call("getLegacyConfig");
+        for (var value : legacy.values()) {
+            assertNull(value);
+        }
+        assertThrows(AssertionError.class, () -> agoraScore.invoke(owner, "migrateConfig"));
+    }
+
     @Test
     void getVote() {
         // submit dummy proposal
         long endTime = sm.getBlock().getTimestamp() + 2 * AgoraImpl.DAY_IN_MICROSECONDS.longValue();
-        agoraScore.invoke(owner, "submitProposal", BigInteger.valueOf(endTime), "testIpfsHash");
+        agoraScore.invoke(owner, "submitProposal", BigInteger.valueOf(endTime), "testIpfsHash", null, null);
 
         var pid = (BigInteger) agoraScore.call("lastProposalId");
         agoraScore.invoke(owner, "vote", pid, "for");
@@ -90,4 +311,1006 @@ class AgoraUnitTest extends TestBase {
             assertEquals(balance, vote.get("_power"));
         }
     }
+
+    private void deployLegacyAgora() throws Exception {
+        agoraScore = sm.deploy(owner, LegacyAgoraScore.class);
+        agoraScore.invoke(owner, "setGovernanceToken", tokenScore.getAddress(), "irc-2", BigInteger.ZERO);
+    }
+
+    private BigInteger submitLegacyProposal(Account creator, long duration) {
+        long now = sm.getBlock().getTimestamp();
+        agoraScore.invoke(owner, "submitLegacyProposal", creator.getAddress(), now, now + duration);
+        return (BigInteger) agoraScore.call("lastProposalId");
+    }
+
+    private static void advance(long micros) {
+        // blocks are produced every 2 seconds
+        sm.getBlock().increase(micros / 2_000_000 + 1);
+    }
+
+    private BigInteger submitProposal(Account creator) {
+        return submitProposal(creator, 2 * AgoraImpl.DAY_IN_MICROSECONDS.longValue());
+    }
+
+    private BigInteger submitProposal(Account creator, long duration) {
+        long endTime = sm.getBlock().getTimestamp() + duration;
+        agoraScore.invoke(creator, "submitProposal", BigInteger.valueOf(endTime), "testIpfsHash", null, null);
+        return (BigInteger) agoraScore.call("lastProposalId");
+    }
+
+    @SuppressWarnings("unchecked")
+    private List<Map<String, Object>> getProposals(long offset, long limit, String status) {
+        return (List<Map<String, Object>>) agoraScore.call("getProposals",
+                BigInteger.valueOf(offset), BigInteger.valueOf(limit), status);
+    }
+
+    @Test
+    void getProposals() {
+        var first = submitProposal(owner);
+        var second = submitProposal(alice);
+        var third = submitProposal(owner);
+        agoraScore.invoke(alice, "cancelProposal", second);
+
+        var all = getProposals(0, 10, null);
+        assertEquals(3, all.size());
+        assertEquals(first, all.get(0).get("_proposalId"));
+        assertEquals(third, all.get(2).get("_proposalId"));
+
+        var page = getProposals(1, 1, null);
+        assertEquals(1, page.size());
+        assertEquals(second, page.get(0).get("_proposalId"));
+        assertEquals(alice.getAddress(), page.get(0).get("_creator"));
+
+        var canceled = getProposals(0, 10, "canceled");
+        assertEquals(1, canceled.size());
+        assertEquals("Canceled", canceled.get(0).get("_status"));
+        assertEquals(2, getProposals(0, 10, "active").size());
+        assertEquals(0, getProposals(3, 10, null).size());
+
+        assertThrows(AssertionError.class, () -> getProposals(0, 0, null));
+        assertThrows(AssertionError.class, () -> getProposals(0, 10, "unknown"));
+    }
+
+    @Test
+    void getProposalsActiveSkipsEnded() {
+        long day = AgoraImpl.DAY_IN_MICROSECONDS.longValue();
+        var ending = submitProposal(owner, 2 * day);
+        var open = submitProposal(alice, 4 * day);
+        advance(2 * day);
+
+        // the ended proposal is still indexed as active, but left out of the active page
+        assertEquals(List.of(ending, open), getProposalIds("active"));
+        var active = getProposals(0, 10, "active");
+        assertEquals(1, active.size());
+        assertEquals(open, active.get(0).get("_proposalId"));
+        assertEquals("Active", active.get(0).get("_status"));
+        assertEquals(0, getProposals(0, 10, "closed").size());
+
+        agoraScore.invoke(alice, "closeExpired", BigInteger.TEN);
+        var closed = getProposals(0, 10, "closed");
+        assertEquals(1, closed.size());
+        assertEquals(ending, closed.get(0).get("_proposalId"));
+        assertEquals(List.of(open), getProposalIds("active"));
+    }
+
+    @SuppressWarnings("unchecked")
+    private List<BigInteger> getProposalIds(String status) {
+        return (List<BigInteger>) agoraScore.call("getProposalIds", status, BigInteger.ZERO, BigInteger.TEN);
+    }
+
+    @Test
+    void statusIndex() {
+        var first = submitProposal(owner);
+        var second = submitProposal(alice);
+        var third = submitProposal(owner);
+        assertEquals(List.of(first, second, third), getProposalIds("active"));
+
+        agoraScore.invoke(alice, "cancelProposal", second);
+        advance(2 * AgoraImpl.DAY_IN_MICROSECONDS.longValue());
+        agoraScore.invoke(alice, "closeProposal", first);
+
+        assertEquals(List.of(third), getProposalIds("active"));
+        assertEquals(List.of(first), getProposalIds("closed"));
+        assertEquals(List.of(second), getProposalIds("canceled"));
+        assertEquals(BigInteger.ONE, agoraScore.call("getProposalCount", "active"));
+
+        // backfilling is idempotent for proposals that are already indexed
+        assertThrows(AssertionError.class, () -> agoraScore.invoke(alice, "indexProposals", BigInteger.TEN));
+        agoraScore.invoke(owner, "indexProposals", BigInteger.TEN);
+        assertEquals(List.of(third), getProposalIds("active"));
+        assertEquals(List.of(first), getProposalIds("closed"));
+    }
+
+    @Test
+    void legacyProposalsLeaveActiveCountUntilIndexed() throws Exception {
+        deployLegacyAgora();
+        long duration = 2 * AgoraImpl.DAY_IN_MICROSECONDS.longValue();
+        var canceled = submitLegacyProposal(alice, duration);
+        var closed = submitLegacyProposal(alice, duration);
+        submitProposal(alice);
+        assertEquals(BigInteger.ONE, agoraScore.call("getActiveProposalCount", alice.getAddress()));
+
+        // neither legacy proposal was counted, so ending them leaves the count of the new one
+        agoraScore.invoke(alice, "cancelProposal", canceled);
+        assertEquals(BigInteger.ONE, agoraScore.call("getActiveProposalCount", alice.getAddress()));
+        advance(duration);
+        agoraScore.invoke(alice, "closeProposal", closed);
+        assertEquals(BigInteger.ONE, agoraScore.call("getActiveProposalCount", alice.getAddress()));
+
+        agoraScore.invoke(owner, "indexProposals", BigInteger.TEN);
+        assertEquals(BigInteger.ONE, agoraScore.call("getActiveProposalCount", alice.getAddress()));
+        assertEquals(List.of(canceled), getProposalIds("canceled"));
+        assertEquals(List.of(closed), getProposalIds("closed"));
+    }
+
+    @Test
+    void indexProposalsQueuesRewrittenLegacyProposals() throws Exception {
+        deployLegacyAgora();
+        long duration = 2 * AgoraImpl.DAY_IN_MICROSECONDS.longValue();
+        var voted = submitLegacyProposal(owner, duration);
+        var migrated = submitLegacyProposal(owner, duration);
+        // both leave the legacy records before the backfill
+        agoraScore.invoke(alice, "vote", voted, "for");
+        agoraScore.invoke(owner, "migrateBatch", BigInteger.TEN);
+
+        agoraScore.invoke(owner, "indexProposals", BigInteger.TEN);
+        assertEquals(List.of(voted, migrated), getProposalIds("active"));
+        advance(duration);
+        agoraScore.invoke(owner, "closeExpired", BigInteger.TEN);
+        assertEquals(List.of(voted, migrated), getProposalIds("closed"));
+        assertEquals(List.of(), getProposalIds("active"));
+        assertEquals(BigInteger.ZERO, agoraScore.call("getActiveProposalCount", owner.getAddress()));
+    }
+
+    @Test
+    void getVoters() {
+        var pid = submitProposal(owner);
+        agoraScore.invoke(alice, "vote", pid, "against");
+        agoraScore.invoke(owner, "vote", pid, "for");
+        assertEquals(BigInteger.TWO, agoraScore.call("getVoterCount", pid));
+
+        @SuppressWarnings("unchecked")
+        var page = (List<Map<String, Object>>) agoraScore.call("getVoters", pid, BigInteger.ZERO, BigInteger.TEN);
+        assertEquals(2, page.size());
+        assertEquals(alice.getAddress(), page.get(0).get("_voter"));
+        assertEquals("against", page.get(0).get("_vote"));
+        assertEquals(tokenScore.call("balanceOf", alice.getAddress()), page.get(0).get("_power"));
+        assertEquals(owner.getAddress(), page.get(1).get("_voter"));
+
+        @SuppressWarnings("unchecked")
+        var tail = (List<Map<String, Object>>) agoraScore.call("getVoters", pid, BigInteger.ONE, BigInteger.TEN);
+        assertEquals(1, tail.size());
+        assertEquals(owner.getAddress(), tail.get(0).get("_voter"));
+    }
+
+    @Test
+    void submitSignedVotesRejectsMalformedBatch() {
+        var pid = submitProposal(owner);
+        assertEquals(BigInteger.ZERO, agoraScore.call("getVoteNonce", alice.getAddress()));
+
+        var ids = new BigInteger[]{pid};
+        var nonces = new BigInteger[]{BigInteger.ZERO};
+        assertThrows(AssertionError.class, () -> agoraScore.invoke(alice, "submitSignedVotes",
+                ids, new String[]{"for", "against"}, nonces, new byte[][]{new byte[65]}));
+        assertThrows(AssertionError.class, () -> agoraScore.invoke(alice, "submitSignedVotes",
+                ids, new String[]{"for"}, nonces, new byte[][]{new byte[64]}));
+        assertThrows(AssertionError.class, () -> agoraScore.invoke(alice, "submitSignedVotes",
+                new BigInteger[0], new String[0], new BigInteger[0], new byte[0][]));
+    }
+
+    private VoteSigner signer(BigInteger balance) {
+        var signer = new VoteSigner();
+        tokenScore.invoke(owner, "transfer", signer.getAddress(), balance, "".getBytes());
+        return signer;
+    }
+
+    private void submitSignedVote(VoteSigner signer, BigInteger pid, String vote, BigInteger nonce) {
+        agoraScore.invoke(alice, "submitSignedVotes", new BigInteger[]{pid}, new String[]{vote},
+                new BigInteger[]{nonce}, new byte[][]{signer.sign(agoraScore.getAddress(), NID, pid, vote, nonce)});
+    }
+
+    @Test
+    @SuppressWarnings("unchecked")
+    void submitSignedVotes() {
+        var pid = submitProposal(owner);
+        var balance = ICX.multiply(BigInteger.valueOf(30));
+        var signer = signer(balance);
+
+        // relayed by alice, counted for the signer
+        submitSignedVote(signer, pid, "against", BigInteger.ZERO);
+        var vote = (Map<String, Object>) agoraScore.call("getVote", signer.getAddress(), pid);
+        assertEquals("against", vote.get("_vote"));
+        assertEquals(balance, vote.get("_power"));
+        assertEquals(Map.of(), agoraScore.call("getVote", alice.getAddress(), pid));
+        assertEquals(BigInteger.ONE, agoraScore.call("getVoteNonce", signer.getAddress()));
+        assertEquals(BigInteger.ZERO, agoraScore.call("getVoteNonce", alice.getAddress()));
+
+        // the next nonce changes the vote
+        submitSignedVote(signer, pid, "for", BigInteger.ONE);
+        var proposal = (Map<String, Object>) agoraScore.call("getProposal", pid);
+        assertEquals(balance, proposal.get("_forVoices"));
+        assertEquals(BigInteger.ZERO, proposal.get("_againstVoices"));
+        assertEquals(BigInteger.TWO, agoraScore.call("getVoteNonce", signer.getAddress()));
+    }
+
+    @Test
+    @SuppressWarnings("unchecked")
+    void submitSignedVotesBatch() {
+        var pid = submitProposal(owner);
+        var votes = new String[]{"for", "against", "for"};
+        var signers = new VoteSigner[votes.length];
+        var balances = new BigInteger[votes.length];
+        var ids = new BigInteger[votes.length];
+        var nonces = new BigInteger[votes.length];
+        var signatures = new byte[votes.length][];
+        for (int i = 0; i < votes.length; i++) {
+            balances[i] = ICX.multiply(BigInteger.valueOf(10 + i));
+            signers[i] = signer(balances[i]);
+            ids[i] = pid;
+            nonces[i] = BigInteger.ZERO;
+            signatures[i] = signers[i].sign(agoraScore.getAddress(), NID, pid, votes[i], BigInteger.ZERO);
+        }
+        agoraScore.invoke(alice, "submitSignedVotes", ids, votes, nonces, signatures);
+
+        for (int i = 0; i < votes.length; i++) {
+            var vote = (Map<String, Object>) agoraScore.call("getVote", signers[i].getAddress(), pid);
+            assertEquals(votes[i], vote.get("_vote"));
+            assertEquals(balances[i], vote.get("_power"));
+            assertEquals(BigInteger.ONE, agoraScore.call("getVoteNonce", signers[i].getAddress()));
+        }
+        var proposal = (Map<String, Object>) agoraScore.call("getProposal", pid);
+        assertEquals(balances[0].add(balances[2]), proposal.get("_forVoices"));
+        assertEquals(balances[1], proposal.get("_againstVoices"));
+        assertEquals(BigInteger.valueOf(3), agoraScore.call("getVoterCount", pid));
+    }
+
+    @Test
+    @SuppressWarnings("unchecked")
+    void irc31BalanceLookups() throws Exception {
+        var id = BigInteger.valueOf(5);
+        var token = sm.deploy(owner, IRC31TestToken.class, id, ICX.multiply(BigInteger.valueOf(1000)));
+        agoraScore = sm.deploy(owner, AgoraImpl.class);
+        agoraScore.invoke(owner, "setGovernanceToken", token.getAddress(), "irc-31", id);
+        agoraScore.invoke(owner, "setNetworkId", NID);
+        var pid = submitProposal(owner);
+
+        int size = 3;
+        var signers = new VoteSigner[size];
+        var holders = new Address[size + 1];
+        var balances = new BigInteger[size + 1];
+        var ids = new BigInteger[size];
+        var votes = new String[size];
+        var nonces = new BigInteger[size];
+        var signatures = new byte[size][];
+        for (int i = 0; i < size; i++) {
+            signers[i] = new VoteSigner();
+            holders[i] = signers[i].getAddress();
+            balances[i] = ICX.multiply(BigInteger.valueOf(i + 1));
+            token.invoke(owner, "transferFrom", owner.getAddress(), holders[i], id, balances[i], null);
+            ids[i] = pid;
+            votes[i] = "for";
+            nonces[i] = BigInteger.ZERO;
+            signatures[i] = signers[i].sign(agoraScore.getAddress(), NID, pid, "for", BigInteger.ZERO);
+        }
+        holders[size] = alice.getAddress();
+        balances[size] = BigInteger.ZERO;
+
+        IRC31TestToken.balanceOfBatchCalls = 0;
+        assertEquals(List.of(balances), agoraScore.call("getVotingPowers", (Object) holders));
+        assertEquals(1, IRC31TestToken.balanceOfBatchCalls);
+
+        IRC31TestToken.balanceOfBatchCalls = 0;
+        agoraScore.invoke(alice, "submitSignedVotes", ids, votes, nonces, signatures);
+        assertEquals(1, IRC31TestToken.balanceOfBatchCalls);
+        for (int i = 0; i < size; i++) {
+            var vote = (Map<String, Object>) agoraScore.call("getVote", holders[i], pid);
+            assertEquals(balances[i], vote.get("_power"));
+        }
+        var proposal = (Map<String, Object>) agoraScore.call("getProposal", pid);
+        assertEquals(balances[0].add(balances[1]).add(balances[2]), proposal.get("_forVoices"));
+    }
+
+    @Test
+    void balanceLookupsSkipRepeatedHolders() throws Exception {
+        var bob = sm.createAccount();
+        var balance = ICX.multiply(BigInteger.valueOf(7));
+        tokenScore.invoke(owner, "transfer", bob.getAddress(), balance, "".getBytes());
+        var aliceBalance = (BigInteger) tokenScore.call("balanceOf", alice.getAddress());
+        var holders = new Address[]{bob.getAddress(), alice.getAddress(), bob.getAddress(), bob.getAddress()};
+        var expected = List.of(balance, aliceBalance, balance, balance);
+
+        IRC2TestToken.balanceOfCalls = 0;
+        assertEquals(expected, agoraScore.call("getVotingPowers", (Object) holders));
+        assertEquals(2, IRC2TestToken.balanceOfCalls);
+
+        var id = BigInteger.valueOf(5);
+        var token = sm.deploy(owner, IRC31TestToken.class, id, ICX.multiply(BigInteger.valueOf(1000)));
+        agoraScore = sm.deploy(owner, AgoraImpl.class);
+        agoraScore.invoke(owner, "setGovernanceToken", token.getAddress(), "irc-31", id);
+        token.invoke(owner, "transferFrom", owner.getAddress(), bob.getAddress(), id, balance, null);
+        token.invoke(owner, "transferFrom", owner.getAddress(), alice.getAddress(), id, aliceBalance, null);
+
+        IRC31TestToken.balanceOfBatchCalls = 0;
+        assertEquals(expected, agoraScore.call("getVotingPowers", (Object) holders));
+        assertEquals(1, IRC31TestToken.balanceOfBatchCalls);
+        assertEquals(2, IRC31TestToken.balanceOfBatchSize);
+    }
+
+    @Test
+    void submitSignedVotesRejectsReplay() {
+        var pid = submitProposal(owner);
+        var signer = signer(ICX);
+        var signature = signer.sign(agoraScore.getAddress(), NID, pid, "for", BigInteger.ZERO);
+        var ids = new BigInteger[]{pid};
+        var votes = new String[]{"for"};
+        var nonces = new BigInteger[]{BigInteger.ZERO};
+        agoraScore.invoke(alice, "submitSignedVotes", ids, votes, nonces, new byte[][]{signature});
+
+        // the same signature again, and a nonce ahead of the current one
+        assertThrows(AssertionError.class, () ->
+                agoraScore.invoke(alice, "submitSignedVotes", ids, votes, nonces, new byte[][]{signature}));
+        assertThrows(AssertionError.class, () -> submitSignedVote(signer, pid, "for", BigInteger.TWO));
+        // a vote other than the signed one recovers another voter, whose nonce does not match
+        assertThrows(AssertionError.class, () -> agoraScore.invoke(alice, "submitSignedVotes",
+                ids, new String[]{"against"}, new BigInteger[]{BigInteger.ONE}, new byte[][]{
+                        signer.sign(agoraScore.getAddress(), NID, pid, "for", BigInteger.ONE)}));
+        // a signature for another contract
+        assertThrows(AssertionError.class, () -> agoraScore.invoke(alice, "submitSignedVotes",
+                ids, votes, new BigInteger[]{BigInteger.ONE}, new byte[][]{
+                        signer.sign(tokenScore.getAddress(), NID, pid, "for", BigInteger.ONE)}));
+        assertEquals(BigInteger.ONE, agoraScore.call("getVoteNonce", signer.getAddress()));
+    }
+
+    @Test
+    void submitSignedVotesBoundToNetwork() throws Exception {
+        assertEquals(NID, agoraScore.call("networkId"));
+        assertThrows(AssertionError.class, () -> agoraScore.invoke(alice, "setNetworkId", BigInteger.TWO));
+        assertThrows(AssertionError.class, () -> agoraScore.invoke(owner, "setNetworkId", BigInteger.ZERO));
+
+        var pid = submitProposal(owner);
+        var signer = signer(ICX);
+        var ids = new BigInteger[]{pid};
+        var votes = new String[]{"for"};
+        var nonces = new BigInteger[]{BigInteger.ZERO};
+        // a vote signed for another network recovers another voter
+        assertThrows(AssertionError.class, () -> agoraScore.invoke(alice, "submitSignedVotes", ids, votes, nonces,
+                new byte[][]{signer.sign(agoraScore.getAddress(), BigInteger.TWO, pid, "for", BigInteger.ZERO)}));
+        submitSignedVote(signer, pid, "for", BigInteger.ZERO);
+        assertEquals(BigInteger.ONE, agoraScore.call("getVoteNonce", signer.getAddress()));
+
+        // signed votes are rejected until the network id is set
+        agoraScore = sm.deploy(owner, AgoraImpl.class);
+        agoraScore.invoke(owner, "setGovernanceToken", tokenScore.getAddress(), "irc-2", BigInteger.ZERO);
+        assertEquals(BigInteger.ZERO, agoraScore.call("networkId"));
+        var other = submitProposal(owner);
+        assertThrows(AssertionError.class, () -> submitSignedVote(signer, other, "for", BigInteger.ZERO));
+    }
+
+    @Test
+    void voteWithProof() throws IOException {
+        var ownerBalance = (BigInteger) tokenScore.call("balanceOf", owner.getAddress());
+        var aliceBalance = (BigInteger) tokenScore.call("balanceOf", alice.getAddress());
+        var tree = SnapshotTree.fromCsv(new StringReader(
+                owner.getAddress() + "," + ownerBalance + "\n"
+                + alice.getAddress() + "," + aliceBalance + "\n"
+                + "hx0000000000000000000000000000000000000001,1\n"));
+
+        long endTime = sm.getBlock().getTimestamp() + 2 * AgoraImpl.DAY_IN_MICROSECONDS.longValue();
+        agoraScore.invoke(owner, "submitProposal", BigInteger.valueOf(endTime), "testIpfsHash", tree.getRoot(), null);
+        var pid = (BigInteger) agoraScore.call("lastProposalId");
+
+        // moving tokens after the snapshot does not change the voting power
+        tokenScore.invoke(alice, "transfer", owner.getAddress(), aliceBalance, "".getBytes());
+        var aliceProof = tree.getProof(alice.getAddress().toString());
+        agoraScore.invoke(alice, "voteWithProof", pid, "for", aliceBalance, aliceProof);
+        @SuppressWarnings("unchecked")
+        var vote = (Map<String, Object>) agoraScore.call("getVote", alice.getAddress(), pid);
+        assertEquals(aliceBalance, vote.get("_power"));
+
+        var ownerProof = tree.getProof(owner.getAddress().toString());
+        assertThrows(AssertionError.class, () ->
+                agoraScore.invoke(owner, "voteWithProof", pid, "for", ownerBalance.add(aliceBalance), ownerProof));
+        assertThrows(AssertionError.class, () -> agoraScore.invoke(owner, "vote", pid, "for"));
+        agoraScore.invoke(owner, "voteWithProof", pid, "against", ownerBalance, ownerProof);
+
+        @SuppressWarnings("unchecked")
+        var proposal = (Map<String, Object>) agoraScore.call("getProposal", pid);
+        assertEquals(true, proposal.get("_snapshot"));
+        assertEquals(aliceBalance, proposal.get("_forVoices"));
+        assertEquals(ownerBalance, proposal.get("_againstVoices"));
+    }
+
+    @Test
+    void getVotingPowers() {
+        @SuppressWarnings("unchecked")
+        var powers = (List<BigInteger>) agoraScore.call("getVotingPowers",
+                (Object) new Address[]{owner.getAddress(), alice.getAddress()});
+        assertEquals(List.of(
+                tokenScore.call("balanceOf", owner.getAddress()),
+                tokenScore.call("balanceOf", alice.getAddress())), powers);
+    }
+
+    @Test
+    void closeExpired() {
+        long day = AgoraImpl.DAY_IN_MICROSECONDS.longValue();
+        var late = submitProposal(owner, 5 * day);
+        var early = submitProposal(owner, 2 * day);
+        var middle = submitProposal(alice, 3 * day);
+        var canceled = submitProposal(alice, 2 * day);
+        agoraScore.invoke(alice, "cancelProposal", canceled);
+
+        advance(3 * day + day / 2);
+        @SuppressWarnings("unchecked")
+        var ended = (Map<String, Object>) agoraScore.call("getProposal", early);
+        assertEquals("Closed", ended.get("_status"));
+        assertThrows(AssertionError.class, () -> agoraScore.invoke(alice, "vote", early, "for"));
+        assertEquals(List.of(late, early, middle), getProposalIds("active"));
+
+        agoraScore.invoke(alice, "closeExpired", BigInteger.TEN);
+        assertEquals(List.of(late), getProposalIds("active"));
+        assertEquals(List.of(early, middle), getProposalIds("closed"));
+        assertEquals(List.of(canceled), getProposalIds("canceled"));
+        assertThrows(AssertionError.class, () -> agoraScore.invoke(alice, "closeProposal", middle));
+
+        // the remaining proposal has not ended, so nothing is closed
+        agoraScore.invoke(alice, "closeExpired", BigInteger.TEN);
+        assertEquals(List.of(late), getProposalIds("active"));
+        agoraScore.invoke(alice, "vote", late, "for");
+    }
+
+    @Test
+    void changeVote() {
+        var pid = submitProposal(owner);
+        var aliceBalance = (BigInteger) tokenScore.call("balanceOf", alice.getAddress());
+        agoraScore.invoke(alice, "vote", pid, "for");
+        agoraScore.invoke(owner, "vote", pid, "for");
+
+        // the new vote carries the current balance
+        var half = aliceBalance.shiftRight(1);
+        tokenScore.invoke(alice, "transfer", owner.getAddress(), half, "".getBytes());
+        agoraScore.invoke(alice, "vote", pid, "abstain");
+
+        @SuppressWarnings("unchecked")
+        var proposal = (Map<String, Object>) agoraScore.call("getProposal", pid);
+        var ownerBalance = (BigInteger) tokenScore.call("balanceOf", owner.getAddress());
+        assertEquals(ownerBalance.subtract(half), proposal.get("_forVoices"));
+        assertEquals(BigInteger.ZERO, proposal.get("_againstVoices"));
+        assertEquals(aliceBalance.subtract(half), proposal.get("_abstainVoices"));
+        assertEquals(BigInteger.TWO, agoraScore.call("getVoterCount", pid));
+
+        @SuppressWarnings("unchecked")
+        var vote = (Map<String, Object>) agoraScore.call("getVote", alice.getAddress(), pid);
+        assertEquals("abstain", vote.get("_vote"));
+        assertEquals(aliceBalance.subtract(half), vote.get("_power"));
+    }
+
+    @SuppressWarnings("unchecked")
+    private Map<String, Object> getResult(BigInteger pid) {
+        return (Map<String, Object>) agoraScore.call("getResult", pid);
+    }
+
+    @Test
+    void getResult() {
+        var threshold = BigInteger.valueOf(6000);
+        agoraScore.invoke(owner, "setVotingRules", ICX.multiply(BigInteger.valueOf(500)), threshold);
+        assertThrows(AssertionError.class, () ->
+                agoraScore.invoke(owner, "setVotingRules", BigInteger.ZERO, BigInteger.valueOf(10_000)));
+        assertThrows(AssertionError.class, () ->
+                agoraScore.invoke(alice, "setVotingRules", BigInteger.ZERO, threshold));
+        @SuppressWarnings("unchecked")
+        var rules = (Map<String, Object>) agoraScore.call("getVotingRules");
+        assertEquals(6000, rules.get("_passThreshold"));
+
+        var passed = submitProposal(owner);
+        var rejected = submitProposal(owner);
+        var noQuorum = submitProposal(owner);
+        agoraScore.invoke(owner, "vote", passed, "for");
+        agoraScore.invoke(alice, "vote", passed, "against");
+        agoraScore.invoke(owner, "vote", rejected, "against");
+        agoraScore.invoke(alice, "vote", rejected, "for");
+        agoraScore.invoke(alice, "vote", noQuorum, "for");
+        assertThrows(AssertionError.class, () -> getResult(passed));
+
+        advance(2 * AgoraImpl.DAY_IN_MICROSECONDS.longValue());
+        // ended but not closed yet: computed on read
+        assertEquals("Passed", getResult(passed).get("_outcome"));
+        agoraScore.invoke(alice, "closeExpired", BigInteger.TEN);
+
+        // the rules in force at close are kept with the result
+        agoraScore.invoke(owner, "setVotingRules", ICX.multiply(BigInteger.valueOf(2000)), threshold);
+        var result = getResult(passed);
+        assertEquals("Passed", result.get("_outcome"));
+        assertEquals(ICX.multiply(BigInteger.valueOf(1000)), result.get("_turnout"));
+        assertEquals(2, result.get("_voters"));
+        assertEquals(ICX.multiply(BigInteger.valueOf(600)), result.get("_margin"));
+        assertEquals("Rejected", getResult(rejected).get("_outcome"));
+        assertEquals(ICX.multiply(BigInteger.valueOf(-600)), getResult(rejected).get("_margin"));
+        assertEquals("NoQuorum", getResult(noQuorum).get("_outcome"));
+    }
+
+    @Test
+    void archiveVotes() {
+        var pid = submitProposal(owner);
+        String[] choices = {"for", "against", "abstain"};
+        List<Account> accounts = new ArrayList<>();
+        List<byte[]> leaves = new ArrayList<>();
+        List<List<byte[]>> proofs = new ArrayList<>();
+        for (int i = 0; i < 5; i++) {
+            var voter = sm.createAccount();
+            var power = ICX.multiply(BigInteger.valueOf(i + 1));
+            tokenScore.invoke(owner, "transfer", voter.getAddress(), power, "".getBytes());
+            agoraScore.invoke(voter, "vote", pid, choices[i % 3]);
+            accounts.add(voter);
+            leaves.add(MerkleProof.voteLeaf(voter.getAddress(), new TokenVote(choices[i % 3], power)));
+            proofs.add(new ArrayList<>());
+        }
+        var root = SnapshotTree.build(leaves, proofs);
+        assertThrows(AssertionError.class, () -> agoraScore.invoke(owner, "archiveVotes", pid, BigInteger.TEN));
+
+        advance(2 * AgoraImpl.DAY_IN_MICROSECONDS.longValue());
+        agoraScore.invoke(alice, "closeProposal", pid);
+        // only the owner can delete the records
+        assertThrows(AssertionError.class, () -> agoraScore.invoke(alice, "archiveVotes", pid, BigInteger.TEN));
+        agoraScore.invoke(owner, "archiveVotes", pid, BigInteger.TWO);
+        @SuppressWarnings("unchecked")
+        var progress = (Map<String, Object>) agoraScore.call("getVoteArchive", pid);
+        assertEquals(2, progress.get("_archived"));
+        assertThrows(AssertionError.class, () -> agoraScore.call("getVoters", pid, BigInteger.ZERO, BigInteger.TEN));
+
+        agoraScore.invoke(owner, "archiveVotes", pid, BigInteger.TEN);
+        @SuppressWarnings("unchecked")
+        var archive = (Map<String, Object>) agoraScore.call("getVoteArchive", pid);
+        assertEquals(5, archive.get("_archived"));
+        assertArrayEquals(root, (byte[]) archive.get("_root"));
+        assertThrows(AssertionError.class, () -> agoraScore.invoke(owner, "archiveVotes", pid, BigInteger.TEN));
+        assertEquals(Map.of(), agoraScore.call("getVote", accounts.get(0).getAddress(), pid));
+        // the tallies and the voter count are kept
+        assertEquals(BigInteger.valueOf(5), agoraScore.call("getVoterCount", pid));
+
+        for (int i = 0; i < accounts.size(); i++) {
+            var proof = proofs.get(i).toArray(new byte[0][]);
+            var power = ICX.multiply(BigInteger.valueOf(i + 1));
+            assertTrue((Boolean) agoraScore.call("verifyArchivedVote", pid, accounts.get(i).getAddress(),
+                    choices[i % 3], power, proof));
+            assertFalse((Boolean) agoraScore.call("verifyArchivedVote", pid, accounts.get(i).getAddress(),
+                    choices[(i + 1) % 3], power, proof));
+        }
+    }
+
+
+    @Test
+    void archiveVotesClearsDelegationOverrides() throws Exception {
+        deployLegacyAgora();
+        var bob = sm.createAccount();
+        var balance = ICX.multiply(BigInteger.valueOf(40));
+        tokenScore.invoke(owner, "transfer", bob.getAddress(), balance, "".getBytes());
+        agoraScore.invoke(bob, "delegate", alice.getAddress());
+        advance(0);
+        var pid = submitProposal(owner);
+
+        // bob voting himself takes his balance out of alice's vote, whether she votes or not
+        agoraScore.invoke(bob, "vote", pid, "against");
+        assertEquals(balance, agoraScore.call("getDelegationOverride", pid, alice.getAddress()));
+
+        advance(2 * AgoraImpl.DAY_IN_MICROSECONDS.longValue());
+        agoraScore.invoke(owner, "closeProposal", pid);
+        agoraScore.invoke(owner, "archiveVotes", pid, BigInteger.TEN);
+        assertNull(agoraScore.call("getDelegationOverride", pid, alice.getAddress()));
+    }
+    @Test
+    void creatorProposals() {
+        agoraScore.invoke(owner, "setMaxActiveProposals", BigInteger.TWO);
+        assertThrows(AssertionError.class, () -> agoraScore.invoke(alice, "setMaxActiveProposals", BigInteger.TEN));
+
+        long day = AgoraImpl.DAY_IN_MICROSECONDS.longValue();
+        var first = submitProposal(alice, 2 * day);
+        var mine = submitProposal(owner);
+        var second = submitProposal(alice, 3 * day);
+        assertThrows(AssertionError.class, () -> submitProposal(alice));
+        assertEquals(BigInteger.TWO, agoraScore.call("getActiveProposalCount", alice.getAddress()));
+
+        // canceling or closing a proposal frees its slot
+        agoraScore.invoke(alice, "cancelProposal", second);
+        var third = submitProposal(alice, 3 * day);
+        advance(2 * day + day / 2);
+        assertThrows(AssertionError.class, () -> submitProposal(alice));
+        agoraScore.invoke(owner, "closeExpired", BigInteger.TEN);
+        var fourth = submitProposal(alice);
+        assertEquals(BigInteger.TWO, agoraScore.call("getActiveProposalCount", alice.getAddress()));
+        assertEquals(BigInteger.ZERO, agoraScore.call("getActiveProposalCount", owner.getAddress()));
+
+        assertEquals(BigInteger.valueOf(4), agoraScore.call("getCreatorProposalCount", alice.getAddress()));
+        assertEquals(List.of(first, second, third, fourth), agoraScore.call("getCreatorProposalIds",
+                alice.getAddress(), BigInteger.ZERO, BigInteger.TEN));
+        assertEquals(List.of(third), agoraScore.call("getCreatorProposalIds",
+                alice.getAddress(), BigInteger.TWO, BigInteger.ONE));
+        assertEquals(List.of(mine), agoraScore.call("getCreatorProposalIds",
+                owner.getAddress(), BigInteger.ZERO, BigInteger.TEN));
+    }
+
+    @SuppressWarnings("unchecked")
+    private List<BigInteger> getProposalVersions(BigInteger... ids) {
+        return (List<BigInteger>) agoraScore.call("getProposalVersions", (Object) ids);
+    }
+
+    @Test
+    void getProposalVersions() {
+        var voted = submitProposal(owner);
+        var canceled = submitProposal(owner);
+        var idle = submitProposal(owner);
+        assertEquals(List.of(BigInteger.ZERO, BigInteger.ZERO, BigInteger.ZERO),
+                getProposalVersions(voted, canceled, idle));
+
+        agoraScore.invoke(alice, "vote", voted, "for");
+        agoraScore.invoke(alice, "vote", voted, "against");
+        agoraScore.invoke(owner, "cancelProposal", canceled);
+        assertEquals(List.of(BigInteger.TWO, BigInteger.ONE, BigInteger.ZERO),
+                getProposalVersions(voted, canceled, idle));
+        @SuppressWarnings("unchecked")
+        var proposal = (Map<String, Object>) agoraScore.call("getProposal", voted);
+        assertEquals(2L, proposal.get("_version"));
+
+        advance(2 * AgoraImpl.DAY_IN_MICROSECONDS.longValue());
+        agoraScore.invoke(alice, "closeProposal", voted);
+        assertEquals(List.of(BigInteger.valueOf(3), BigInteger.ONE, BigInteger.ZERO),
+                getProposalVersions(voted, canceled, idle));
+        assertThrows(AssertionError.class, () -> getProposalVersions(BigInteger.valueOf(100)));
+    }
+
+    @Test
+    @SuppressWarnings("unchecked")
+    void delegateAgainAfterTransfer() {
+        var bob = sm.createAccount();
+        var carol = sm.createAccount();
+        var bobBalance = ICX.multiply(BigInteger.valueOf(100));
+        var moved = ICX.multiply(BigInteger.valueOf(60));
+        tokenScore.invoke(owner, "transfer", bob.getAddress(), bobBalance, "".getBytes());
+        agoraScore.invoke(bob, "delegate", alice.getAddress());
+        tokenScore.invoke(bob, "transfer", carol.getAddress(), moved, "".getBytes());
+        var aliceBalance = (BigInteger) tokenScore.call("balanceOf", alice.getAddress());
+        var kept = bobBalance.subtract(moved);
+
+        // the delegated balance is the one bob had when he delegated, until he delegates again
+        assertEquals(bobBalance, agoraScore.call("getDelegatedPower", alice.getAddress()));
+        agoraScore.invoke(bob, "delegate", alice.getAddress());
+        assertEquals(kept, agoraScore.call("getDelegatedPower", alice.getAddress()));
+        advance(0);
+        var pid = submitProposal(owner);
+
+        agoraScore.invoke(carol, "vote", pid, "against");
+        agoraScore.invoke(alice, "vote", pid, "for");
+        var vote = (Map<String, Object>) agoraScore.call("getVote", alice.getAddress(), pid);
+        assertEquals(aliceBalance.add(kept), vote.get("_power"));
+        var proposal = (Map<String, Object>) agoraScore.call("getProposal", pid);
+        assertEquals(aliceBalance.add(kept), proposal.get("_forVoices"));
+        assertEquals(moved, proposal.get("_againstVoices"));
+
+        // bob voting takes out the balance he delegated
+        agoraScore.invoke(bob, "vote", pid, "abstain");
+        proposal = (Map<String, Object>) agoraScore.call("getProposal", pid);
+        assertEquals(aliceBalance, proposal.get("_forVoices"));
+        assertEquals(moved, proposal.get("_againstVoices"));
+        assertEquals(kept, proposal.get("_abstainVoices"));
+    }
+
+    @Test
+    void delegate() {
+        var bob = sm.createAccount();
+        var carol = sm.createAccount();
+        var bobBalance = ICX.multiply(BigInteger.valueOf(100));
+        var carolBalance = ICX.multiply(BigInteger.valueOf(50));
+        tokenScore.invoke(owner, "transfer", bob.getAddress(), bobBalance, "".getBytes());
+        tokenScore.invoke(owner, "transfer", carol.getAddress(), carolBalance, "".getBytes());
+        var aliceBalance = (BigInteger) tokenScore.call("balanceOf", alice.getAddress());
+        var ownerBalance = (BigInteger) tokenScore.call("balanceOf", owner.getAddress());
+
+        assertThrows(AssertionError.class, () -> agoraScore.invoke(bob, "delegate", bob.getAddress()));
+        assertThrows(AssertionError.class, () -> agoraScore.invoke(bob, "undelegate"));
+        agoraScore.invoke(bob, "delegate", alice.getAddress());
+        agoraScore.invoke(carol, "delegate", alice.getAddress());
+        assertEquals(bobBalance.add(carolBalance), agoraScore.call("getDelegatedPower", alice.getAddress()));
+        advance(0);
+        var pid = submitProposal(owner);
+
+        agoraScore.invoke(alice, "vote", pid, "for");
+        @SuppressWarnings("unchecked")
+        var vote = (Map<String, Object>) agoraScore.call("getVote", alice.getAddress(), pid);
+        assertEquals(aliceBalance.add(bobBalance).add(carolBalance), vote.get("_power"));
+
+        // a delegator voting takes its balance out of the delegate's vote
+        agoraScore.invoke(bob, "vote", pid, "against");
+        // delegations changed after the submission apply to later proposals only
+        agoraScore.invoke(bob, "delegate", owner.getAddress());
+        agoraScore.invoke(carol, "undelegate");
+        agoraScore.invoke(owner, "vote", pid, "abstain");
+        agoraScore.invoke(carol, "vote", pid, "for");
+        // the delegate voting again keeps the delegators that voted out
+        agoraScore.invoke(alice, "vote", pid, "for");
+
+        @SuppressWarnings("unchecked")
+        var proposal = (Map<String, Object>) agoraScore.call("getProposal", pid);
+        assertEquals(aliceBalance.add(carolBalance), proposal.get("_forVoices"));
+        assertEquals(bobBalance, proposal.get("_againstVoices"));
+        assertEquals(ownerBalance, proposal.get("_abstainVoices"));
+        @SuppressWarnings("unchecked")
+        var delegateVote = (Map<String, Object>) agoraScore.call("getVote", alice.getAddress(), pid);
+        assertEquals(aliceBalance, delegateVote.get("_power"));
+
+        assertEquals(Map.of("_delegate", owner.getAddress(), "_amount", bobBalance),
+                agoraScore.call("getDelegation", bob.getAddress()));
+        assertEquals(Map.of(), agoraScore.call("getDelegation", carol.getAddress()));
+        assertEquals(BigInteger.ZERO, agoraScore.call("getDelegatedPower", alice.getAddress()));
+
+        advance(0);
+        var next = submitProposal(owner);
+        agoraScore.invoke(owner, "vote", next, "for");
+        @SuppressWarnings("unchecked")
+        var ownerVote = (Map<String, Object>) agoraScore.call("getVote", owner.getAddress(), next);
+        assertEquals(ownerBalance.add(bobBalance), ownerVote.get("_power"));
+    }
+
+    @Test
+    @SuppressWarnings("unchecked")
+    void batchVotes() {
+        var closed = submitProposal(owner);
+        agoraScore.invoke(alice, "vote", closed, "against");
+        advance(2 * AgoraImpl.DAY_IN_MICROSECONDS.longValue());
+        agoraScore.invoke(owner, "closeProposal", closed);
+        var first = submitProposal(owner);
+        var second = submitProposal(alice);
+        agoraScore.invoke(owner, "vote", first, "for");
+        agoraScore.invoke(alice, "vote", second, "abstain");
+        var aliceBalance = (BigInteger) tokenScore.call("balanceOf", alice.getAddress());
+        var ownerBalance = (BigInteger) tokenScore.call("balanceOf", owner.getAddress());
+
+        var votes = (List<Map<String, Object>>) agoraScore.call("getVotes", alice.getAddress(),
+                new BigInteger[]{closed, first, second});
+        assertEquals(List.of(
+                Map.of("_vote", "against", "_power", aliceBalance),
+                Map.of(),
+                Map.of("_vote", "abstain", "_power", aliceBalance)), votes);
+        var voters = (List<Map<String, Object>>) agoraScore.call("getVotesFor", first,
+                new Address[]{alice.getAddress(), owner.getAddress()});
+        assertEquals(List.of(Map.of(), Map.of("_vote", "for", "_power", ownerBalance)), voters);
+
+        // a holder without tokens is eligible through the balances delegated to it
+        var bob = sm.createAccount();
+        var carol = sm.createAccount();
+        agoraScore.invoke(alice, "delegate", bob.getAddress());
+        advance(0);
+        var delegated = submitProposal(owner);
+        var ids = new BigInteger[]{closed, first, delegated};
+        var dashboard = (List<Map<String, Object>>) agoraScore.call("getVoterDashboard", bob.getAddress(), ids);
+        assertEquals(3, dashboard.size());
+        assertEquals(List.of(false, false, true), List.of(
+                dashboard.get(0).get("_eligible"), dashboard.get(1).get("_eligible"), dashboard.get(2).get("_eligible")));
+        assertEquals(agoraScore.call("getProposal", closed), dashboard.get(0).get("_proposal"));
+        assertEquals(Map.of(), dashboard.get(2).get("_vote"));
+
+        dashboard = (List<Map<String, Object>>) agoraScore.call("getVoterDashboard", alice.getAddress(), ids);
+        assertEquals(Map.of("_vote", "against", "_power", aliceBalance), dashboard.get(0).get("_vote"));
+        assertEquals(true, dashboard.get(1).get("_eligible"));
+        dashboard = (List<Map<String, Object>>) agoraScore.call("getVoterDashboard", carol.getAddress(), ids);
+        assertEquals(false, dashboard.get(2).get("_eligible"));
+
+        var tooMany = new BigInteger[AgoraImpl.MAX_PAGE_SIZE + 1];
+        Arrays.fill(tooMany, first);
+        assertThrows(AssertionError.class, () -> agoraScore.call("getVotes", alice.getAddress(), tooMany));
+        assertThrows(AssertionError.class, () -> agoraScore.call("getVoterDashboard", alice.getAddress(), tooMany));
+        assertThrows(AssertionError.class, () -> agoraScore.call("getVotesFor", first,
+                new Address[AgoraImpl.MAX_PAGE_SIZE + 1]));
+    }
+
+    @Test
+    @SuppressWarnings("unchecked")
+    void getStats() {
+        var empty = (Map<String, Object>) agoraScore.call("getStats");
+        assertEquals(BigInteger.ZERO, empty.get("_proposals"));
+        assertEquals(0L, empty.get("_votes"));
+        assertEquals(BigInteger.ZERO, empty.get("_power"));
+
+        var voted = submitProposal(owner);
+        var canceled = submitProposal(alice);
+        agoraScore.invoke(alice, "cancelProposal", canceled);
+        var aliceBalance = (BigInteger) tokenScore.call("balanceOf", alice.getAddress());
+        var ownerBalance = (BigInteger) tokenScore.call("balanceOf", owner.getAddress());
+        agoraScore.invoke(owner, "vote", voted, "for");
+        agoraScore.invoke(alice, "vote", voted, "for");
+        // a changed vote is counted, but its power only once
+        agoraScore.invoke(alice, "vote", voted, "against");
+
+        var stats = (Map<String, Object>) agoraScore.call("getStats");
+        assertEquals(BigInteger.TWO, stats.get("_proposals"));
+        assertEquals(1, stats.get("_active"));
+        assertEquals(0, stats.get("_closed"));
+        assertEquals(1, stats.get("_canceled"));
+        assertEquals(3L, stats.get("_votes"));
+        assertEquals(2L, stats.get("_voters"));
+        assertEquals(aliceBalance.add(ownerBalance), stats.get("_power"));
+
+        advance(2 * AgoraImpl.DAY_IN_MICROSECONDS.longValue());
+        var proposalStats = (Map<String, Object>) agoraScore.call("getProposalStats", voted);
+        assertEquals("Closed", proposalStats.get("_status"));
+        assertEquals(2, proposalStats.get("_voters"));
+        assertEquals(aliceBalance.add(ownerBalance), proposalStats.get("_power"));
+        assertEquals(3L, proposalStats.get("_version"));
+        agoraScore.invoke(owner, "closeProposal", voted);
+        stats = (Map<String, Object>) agoraScore.call("getStats");
+        assertEquals(0, stats.get("_active"));
+        assertEquals(1, stats.get("_closed"));
+        assertThrows(AssertionError.class, () -> agoraScore.call("getProposalStats", BigInteger.TEN));
+    }
+
+    @SuppressWarnings("unchecked")
+    private Map<String, Object> exportState(byte[] cursor) {
+        return (Map<String, Object>) agoraScore.call("exportState", (Object) cursor);
+    }
+
+    @Test
+    @SuppressWarnings("unchecked")
+    void exportState() {
+        var pid = submitProposal(owner);
+        List<Address> voters = new ArrayList<>();
+        for (int i = 0; i < AgoraImpl.MAX_EXPORT_SIZE + 10; i++) {
+            var voter = sm.createAccount();
+            tokenScore.invoke(owner, "transfer", voter.getAddress(), ICX, "".getBytes());
+            agoraScore.invoke(voter, "vote", pid, i % 2 == 0 ? "for" : "against");
+            voters.add(voter.getAddress());
+        }
+        var canceled = submitProposal(alice);
+        agoraScore.invoke(alice, "cancelProposal", canceled);
+        var root = new byte[32];
+        root[31] = 1;
+        long endTime = sm.getBlock().getTimestamp() + 2 * AgoraImpl.DAY_IN_MICROSECONDS.longValue();
+        agoraScore.invoke(owner, "submitProposal", BigInteger.valueOf(endTime), "testIpfsHash", root, null);
+
+        List<List<Object>> proposalRows = new ArrayList<>();
+        List<List<Object>> voteRows = new ArrayList<>();
+        var page = exportState(null);
+        var config = (Map<String, Object>) page.get("_config");
+        assertEquals(BigInteger.valueOf(3), config.get("_lastProposalId"));
+        assertEquals(tokenScore.getAddress(), ((Map<String, Object>) config.get("_token")).get("_address"));
+        int pages = 1;
+        while (true) {
+            var rows = (List<List<Object>>) page.get("_proposals");
+            var votes = (List<List<Object>>) page.get("_votes");
+            assertTrue(rows.size() + votes.size() <= AgoraImpl.MAX_EXPORT_SIZE);
+            proposalRows.addAll(rows);
+            voteRows.addAll(votes);
+            var cursor = (byte[]) page.get("_cursor");
+            if (cursor == null) {
+                break;
+            }
+            page = exportState(cursor);
+            assertFalse(page.containsKey("_config"));
+            pages++;
+        }
+        assertEquals(2, pages);
+
+        assertEquals(3, proposalRows.size());
+        var first = proposalRows.get(0);
+        var proposal = (Map<String, Object>) agoraScore.call("getProposal", pid);
+        assertEquals(pid, first.get(0));
+        assertEquals(owner.getAddress(), first.get(1));
+        assertEquals(proposal.get("_forVoices"), first.get(6));
+        assertEquals(proposal.get("_againstVoices"), first.get(7));
+        assertEquals(voters.size(), first.get(9));
+        assertEquals(proposal.get("_version"), first.get(10));
+        assertEquals(11, first.size());
+        assertEquals(Proposal.STATUS_CANCELED, proposalRows.get(1).get(2));
+        assertArrayEquals(root, (byte[]) proposalRows.get(2).get(11));
+
+        assertEquals(voters.size(), voteRows.size());
+        for (int i = 0; i < voters.size(); i++) {
+            assertEquals(List.of(pid, voters.get(i), i % 2 == 0 ? "for" : "against", ICX), voteRows.get(i));
+        }
+
+        var w = Context.newByteArrayObjectWriter("RLPn");
+        w.writeListOf(BigInteger.ZERO, 0);
+        assertThrows(AssertionError.class, () -> exportState(w.toByteArray()));
+    }
+
+    @Test
+    @SuppressWarnings("unchecked")
+    void multiChoice() {
+        long endTime = sm.getBlock().getTimestamp() + 2 * AgoraImpl.DAY_IN_MICROSECONDS.longValue();
+        String[] labels = {"Red", "Green", "Blue", "Yellow"};
+        assertThrows(AssertionError.class, () -> agoraScore.invoke(owner, "submitProposal",
+                BigInteger.valueOf(endTime), "testIpfsHash", null, new String[]{"Only"}));
+        assertThrows(AssertionError.class, () -> agoraScore.invoke(owner, "submitProposal",
+                BigInteger.valueOf(endTime), "testIpfsHash", null, new String[Votes.MAX_CHOICES + 1]));
+        agoraScore.invoke(owner, "submitProposal", BigInteger.valueOf(endTime), "testIpfsHash", null, labels);
+        var pid = (BigInteger) agoraScore.call("lastProposalId");
+
+        var carol = sm.createAccount();
+        var dave = sm.createAccount();
+        tokenScore.invoke(owner, "transfer", carol.getAddress(), ICX.multiply(BigInteger.valueOf(30)), "".getBytes());
+        tokenScore.invoke(owner, "transfer", dave.getAddress(), ICX.multiply(BigInteger.valueOf(20)), "".getBytes());
+        agoraScore.invoke(carol, "voteChoice", pid, BigInteger.valueOf(3));
+        agoraScore.invoke(dave, "vote", pid, "1");
+        // a changed vote moves the power to the new choice
+        agoraScore.invoke(dave, "voteChoice", pid, BigInteger.TWO);
+        assertThrows(AssertionError.class, () -> agoraScore.invoke(dave, "vote", pid, "for"));
+        assertThrows(AssertionError.class, () -> agoraScore.invoke(dave, "voteChoice", pid, BigInteger.valueOf(4)));
+        assertThrows(AssertionError.class, () -> agoraScore.invoke(dave, "voteChoice", pid, BigInteger.ONE.negate()));
+
+        var proposal = (Map<String, Object>) agoraScore.call("getProposal", pid);
+        assertEquals(List.of(labels), proposal.get("_choices"));
+        assertEquals(List.of(BigInteger.ZERO, BigInteger.ZERO, ICX.multiply(BigInteger.valueOf(20)),
+                ICX.multiply(BigInteger.valueOf(30))), proposal.get("_tallies"));
+        assertFalse(proposal.containsKey("_forVoices"));
+        assertEquals(Map.of("_vote", "2", "_power", ICX.multiply(BigInteger.valueOf(20))),
+                agoraScore.call("getVote", dave.getAddress(), pid));
+
+        // the preset can be voted by index too
+        var preset = submitProposal(owner);
+        agoraScore.invoke(carol, "voteChoice", preset, BigInteger.valueOf(Votes.CHOICE_AGAINST));
+        assertEquals("against", ((Map<String, Object>) agoraScore.call("getVote", carol.getAddress(), preset)).get("_vote"));
+        assertThrows(AssertionError.class, () -> agoraScore.invoke(carol, "voteChoice", preset, BigInteger.valueOf(3)));
+
+        advance(2 * AgoraImpl.DAY_IN_MICROSECONDS.longValue());
+        agoraScore.invoke(alice, "closeProposal", pid);
+        var result = getResult(pid);
+        assertEquals("Decided", result.get("_outcome"));
+        assertEquals(3, result.get("_winner"));
+        assertEquals(ICX.multiply(BigInteger.TEN), result.get("_margin"));
+    }
+
+    @Test
+    @SuppressWarnings("unchecked")
+    void migrateBatch() {
+        assertThrows(AssertionError.class, () -> agoraScore.invoke(owner, "migrateBatch", BigInteger.TEN));
+        var pid = submitProposal(owner);
+        for (int i = 0; i < 3; i++) {
+            var voter = sm.createAccount();
+            tokenScore.invoke(owner, "transfer", voter.getAddress(), ICX, "".getBytes());
+            agoraScore.invoke(voter, "vote", pid, "for");
+        }
+        var next = submitProposal(alice);
+        var version = ((Map<String, Object>) agoraScore.call("getProposal", pid)).get("_version");
+
+        assertThrows(AssertionError.class, () -> agoraScore.invoke(alice, "migrateBatch", BigInteger.TEN));
+        assertThrows(AssertionError.class, () -> agoraScore.invoke(owner, "migrateBatch", BigInteger.ZERO));
+        // the proposal and two of its votes
+        agoraScore.invoke(owner, "migrateBatch", BigInteger.valueOf(3));
+        var status = (Map<String, Object>) agoraScore.call("getMigrationStatus");
+        assertEquals(pid, status.get("_nextProposalId"));
+        assertEquals(false, status.get("_complete"));
+
+        agoraScore.invoke(owner, "migrateBatch", BigInteger.TWO);
+        status = (Map<String, Object>) agoraScore.call("getMigrationStatus");
+        assertEquals(next.add(BigInteger.ONE), status.get("_nextProposalId"));
+        assertEquals(true, status.get("_complete"));
+        assertThrows(AssertionError.class, () -> agoraScore.invoke(owner, "migrateBatch", BigInteger.TEN));
+        assertEquals(version, ((Map<String, Object>) agoraScore.call("getProposal", pid)).get("_version"));
+
+        var later = submitProposal(owner);
+        assertEquals(false, ((Map<String, Object>) agoraScore.call("getMigrationStatus")).get("_complete"));
+        agoraScore.invoke(owner, "migrateBatch", BigInteger.TEN);
+        assertEquals(later.add(BigInteger.ONE),
+                ((Map<String, Object>) agoraScore.call("getMigrationStatus")).get("_nextProposalId"));
+    }
+
+    @Test
+    @SuppressWarnings("unchecked")
+    void migrateBatchUpgradesUntaggedRecords() throws Exception {
+        deployLegacyAgora();
+        var pid = submitProposal(owner);
+        agoraScore.invoke(alice, "vote", pid, "against");
+        var proposal = agoraScore.call("getProposal", pid);
+        var vote = agoraScore.call("getVote", alice.getAddress(), pid);
+        agoraScore.invoke(owner, "untagRecords", pid, alice.getAddress());
+        assertEquals(Map.of("state", true, "info", true, "vote", true),
+                agoraScore.call("getRecordUpgrades", pid, alice.getAddress()));
+        // the untagged records read back unchanged
+        assertEquals(proposal, agoraScore.call("getProposal", pid));
+        assertEquals(vote, agoraScore.call("getVote", alice.getAddress(), pid));
+
+        agoraScore.invoke(owner, "migrateBatch", BigInteger.TEN);
+        assertEquals(true, ((Map<String, Object>) agoraScore.call("getMigrationStatus")).get("_complete"));
+        assertEquals(Map.of("state", false, "info", false, "vote", false),
+                agoraScore.call("getRecordUpgrades", pid, alice.getAddress()));
+        assertEquals(proposal, agoraScore.call("getProposal", pid));
+        assertEquals(vote, agoraScore.call("getVote", alice.getAddress(), pid));
+    }
 }
@@ -0,0 +1,304 @@
+/*
+ * Copyright 2022 Craft Network
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package network.craft.score;
+
+import com.iconloop.score.test.Account;
+import com.iconloop.score.test.ServiceManager;
+import com.iconloop.score.test.TestBase;
+import org.junit.jupiter.api.Test;
+import score.ByteArrayObjectWriter;
+import score.Context;
+import score.ObjectReader;
+
+import java.math.BigInteger;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class RecordCodecTest extends TestBase {
+    private static final ServiceManager sm = getServiceManager();
+    private static final Account alice = sm.createAccount();
+    private static final String IPFS_HASH = "QmYwAPJzv5CZsnA625s3Xf2nemtYgPpHdWEz79ojWnPbdG";
+
+    private static ByteArrayObjectWriter writer() {
+        return Context.newByteArrayObjectWriter("RLPn");
+    }
+
+    private static ObjectReader reader(byte[] bytes) {
+        return Context.newByteArrayObjectReader("RLPn", bytes);
+    }
+
+    private static void report(String record, byte[] legacy, byte[] compact) {
+        System.out.println(record + ": " + legacy.length + " -> " + compact.length
+                + " bytes (saves " + (legacy.length - compact.length) + ")");
+        assertTrue(compact.length < legacy.length);
+    }
+
+    @Test
+    void tokenVote() {
+        for (String vote : new String[]{"for", "against", "abstain"}) {
+            var amount = ICX.multiply(BigInteger.valueOf(1234));
+            var legacy = writer();
+            legacy.writeListOf(vote, amount);
+            var compact = writer();
+            TokenVote.writeObject(compact, new TokenVote(vote, amount));
+            report("TokenVote(" + vote + ")", legacy.toByteArray(), compact.toByteArray());
+
+            for (byte[] bytes : new byte[][]{legacy.toByteArray(), compact.toByteArray()}) {
+                var v = TokenVote.readObject(reader(bytes));
+                assertEquals(Votes.choiceOf(vote), v.getChoice());
+                assertEquals(amount, v.getAmount());
+            }
+        }
+    }
+
+    @Test
+    void proposal() {
+        long start = 1_660_000_000_000_000L;
+        long end = start + 2 * AgoraImpl.DAY_IN_MICROSECONDS.longValue();
+        var p = new Proposal(alice.getAddress(), start, end, IPFS_HASH, Proposal.STATUS_CLOSED);
+        var legacy = writer();
+        legacy.writeListOf(p.getCreator(), start, end, IPFS_HASH, Proposal.STATUS_CLOSED);
+        var compact = writer();
+        Proposal.writeObject(compact, p);
+        report("Proposal", legacy.toByteArray(), compact.toByteArray());
+
+        for (byte[] bytes : new byte[][]{legacy.toByteArray(), compact.toByteArray()}) {
+            var d = Proposal.readObject(reader(bytes));
+            assertEquals(alice.getAddress(), d.getCreator());
+            assertEquals(start, d.getStartTime());
+            assertEquals(end, d.getEndTime());
+            assertEquals(IPFS_HASH, d.getIpfsHash());
+            assertEquals(Proposal.STATUS_CLOSED, d.getStatus());
+        }
+    }
+
+    @Test
+    void proposalState() {
+        long end = 1_660_000_000_000_000L + 2 * AgoraImpl.DAY_IN_MICROSECONDS.longValue();
+        var vs = new Votes(ICX, ICX.shiftLeft(1), BigInteger.ZERO);
+        var legacy = writer();
+        legacy.writeListOf(alice.getAddress(), end, end, IPFS_HASH, Proposal.STATUS_ACTIVE);
+        Votes.writeObject(legacy, vs);
+        var hot = writer();
+        ProposalState.writeObject(hot, new ProposalState(Proposal.STATUS_CLOSED, end, vs));
+        // a vote used to read both the full proposal and its tally
+        report("ProposalState", legacy.toByteArray(), hot.toByteArray());
+
+        var d = ProposalState.readObject(reader(hot.toByteArray()));
+        assertEquals(Proposal.STATUS_CLOSED, d.getStatus());
+        assertEquals(end, d.getEndTime());
+        assertEquals(vs.getFor(), d.getVotes().getFor());
+        assertEquals(vs.getAgainst(), d.getVotes().getAgainst());
+        assertEquals(BigInteger.ZERO, d.getVotes().getAbstain());
+        assertEquals(0, d.getVersion());
+
+        // states written before versions were added, with and without a snapshot root
+        var root = new byte[32];
+        root[0] = 1;
+        var unversioned = writer();
+        unversioned.beginList(3);
+        unversioned.write(end << 4 | Proposal.STATUS_ACTIVE);
+        Votes.writeObject(unversioned, vs);
+        unversioned.write(root);
+        unversioned.end();
+        d = ProposalState.readObject(reader(unversioned.toByteArray()));
+        assertArrayEquals(root, d.getSnapshotRoot());
+        assertEquals(0, d.getVersion());
+
+        var versioned = new ProposalState(Proposal.STATUS_ACTIVE, end, vs, root);
+        for (int i = 0; i < 300; i++) {
+            versioned.bumpVersion();
+        }
+        var current = writer();
+        ProposalState.writeObject(current, versioned);
+        d = ProposalState.readObject(reader(current.toByteArray()));
+        assertArrayEquals(root, d.getSnapshotRoot());
+        assertEquals(300, d.getVersion());
+        assertEquals(vs.getAgainst(), d.getVotes().getAgainst());
+
+        var cold = writer();
+        ProposalInfo.writeObject(cold, new ProposalInfo(alice.getAddress(), end, IPFS_HASH));
+        var info = ProposalInfo.readObject(reader(cold.toByteArray()));
+        assertEquals(alice.getAddress(), info.getCreator());
+        assertEquals(end, info.getStartTime());
+        assertEquals(IPFS_HASH, info.getIpfsHash());
+    }
+
+    @Test
+    void votes() {
+        var amount = ICX.multiply(BigInteger.valueOf(5000));
+        Votes[] cases = {
+                new Votes(),
+                new Votes(amount, BigInteger.ZERO, BigInteger.ZERO),
+                new Votes(amount, amount.add(BigInteger.ONE), BigInteger.ZERO),
+                new Votes(amount, amount.shiftLeft(1), amount.shiftLeft(2)),
+        };
+        for (Votes vs : cases) {
+            var legacy = writer();
+            legacy.writeListOf(vs.getFor(), vs.getAgainst(), vs.getAbstain());
+            var compact = writer();
+            Votes.writeObject(compact, vs);
+            var label = "Votes(" + vs.getFor() + ", " + vs.getAgainst() + ", " + vs.getAbstain() + ")";
+            System.out.println(label + ": " + legacy.toByteArray().length + " -> " + compact.toByteArray().length + " bytes");
+            assertTrue(compact.toByteArray().length <= legacy.toByteArray().length);
+
+            for (byte[] bytes : new byte[][]{legacy.toByteArray(), compact.toByteArray()}) {
+                var d = Votes.readObject(reader(bytes));
+                assertEquals(vs.getFor(), d.getFor());
+                assertEquals(vs.getAgainst(), d.getAgainst());
+                assertEquals(vs.getAbstain(), d.getAbstain());
+            }
+        }
+    }
+
+    @Test
+    void multiChoice() {
+        var vs = new Votes(Votes.MAX_CHOICES);
+        var amount = ICX.multiply(BigInteger.valueOf(300));
+        vs.increase(3, amount);
+        vs.increase(vs.choiceIndex("1"), ICX);
+        assertEquals(-1, vs.choiceIndex("for"));
+        assertEquals(-1, vs.choiceIndex("16"));
+        assertEquals(-1, vs.choiceIndex("03"));
+        assertEquals("15", vs.choiceName(15));
+
+        var w = writer();
+        Votes.writeObject(w, vs);
+        var d = Votes.readObject(reader(w.toByteArray()));
+        assertFalse(d.isPreset());
+        assertEquals(Votes.MAX_CHOICES, d.getChoices());
+        assertEquals(amount, d.getTally(3));
+        assertEquals(ICX, d.getTally(1));
+        assertEquals(amount.add(ICX), d.getTotal());
+
+        // the preset keeps its layout
+        var preset = writer();
+        Votes.writeObject(preset, new Votes(ICX, BigInteger.ZERO, BigInteger.ZERO));
+        var legacy = writer();
+        legacy.writeListOf(ICX);
+        assertArrayEquals(legacy.toByteArray(), preset.toByteArray());
+        assertTrue(Votes.readObject(reader(preset.toByteArray())).isPreset());
+
+        var state = writer();
+        ProposalState.writeObject(state, new ProposalState(Proposal.STATUS_ACTIVE, 1_660_000_000_000_000L, new Votes(2)));
+        assertEquals(2, ProposalState.readObject(reader(state.toByteArray())).getVotes().getChoices());
+
+        String[] labels = {"Option A", "Option B", "Option C"};
+        var info = writer();
+        ProposalInfo.writeObject(info, new ProposalInfo(alice.getAddress(), 1_660_000_000_000_000L, IPFS_HASH, labels));
+        assertArrayEquals(labels, ProposalInfo.readObject(reader(info.toByteArray())).getChoices());
+
+        var cfg = new GovernanceConfig(alice.getAddress(), TokenProxy.IRC2, BigInteger.ZERO, BigInteger.ZERO);
+        var result = ProposalResult.compute(d, 2, cfg);
+        assertEquals(ProposalResult.OUTCOME_DECIDED, result.getOutcome());
+        assertEquals(3, result.getWinner());
+        assertEquals(amount.subtract(ICX), result.getMargin());
+        var stored = writer();
+        ProposalResult.writeObject(stored, result);
+        assertEquals(3, ProposalResult.readObject(reader(stored.toByteArray())).getWinner());
+        vs.increase(1, amount.subtract(ICX));
+        assertEquals(ProposalResult.OUTCOME_TIED, ProposalResult.compute(vs, 2, cfg).getOutcome());
+    }
+
+    @Test
+    void recordVersions() {
+        assertEquals(TokenVote.LAYOUT, RecordVersion.of(RecordVersion.tag(TokenVote.LAYOUT)));
+        assertEquals(RecordVersion.UNTAGGED, RecordVersion.of(new byte[]{(byte) Votes.choiceOf("against")}));
+        assertEquals(RecordVersion.UNTAGGED, RecordVersion.of("for".getBytes()));
+
+        // untagged records decode as version 0 and are stored in the latest layout when written back
+        var amount = ICX.multiply(BigInteger.valueOf(77));
+        var untagged = writer();
+        untagged.writeListOf((byte) Votes.choiceOf("abstain"), amount);
+        var v = TokenVote.readObject(reader(untagged.toByteArray()));
+        assertEquals(Votes.CHOICE_ABSTAIN, v.getChoice());
+        assertEquals(amount, v.getAmount());
+        assertTrue(v.needsUpgrade());
+        var tagged = writer();
+        TokenVote.writeObject(tagged, v);
+        v = TokenVote.readObject(reader(tagged.toByteArray()));
+        assertEquals(Votes.CHOICE_ABSTAIN, v.getChoice());
+        assertFalse(v.needsUpgrade());
+
+        long start = 1_660_000_000_000_000L;
+        untagged = writer();
+        untagged.writeListOf(alice.getAddress(), start, IPFS_HASH);
+        var info = ProposalInfo.readObject(reader(untagged.toByteArray()));
+        assertEquals(alice.getAddress(), info.getCreator());
+        assertEquals(start, info.getStartTime());
+        assertTrue(info.needsUpgrade());
+        tagged = writer();
+        ProposalInfo.writeObject(tagged, info);
+        info = ProposalInfo.readObject(reader(tagged.toByteArray()));
+        assertEquals(IPFS_HASH, info.getIpfsHash());
+        assertFalse(info.needsUpgrade());
+
+        var vs = new Votes(amount, BigInteger.ZERO, amount);
+        untagged = writer();
+        untagged.beginList(3);
+        untagged.write(start << 4 | Proposal.STATUS_ACTIVE);
+        Votes.writeObject(untagged, vs);
+        untagged.write(5L);
+        untagged.end();
+        var state = ProposalState.readObject(reader(untagged.toByteArray()));
+        assertEquals(start, state.getEndTime());
+        assertEquals(5, state.getVersion());
+        assertTrue(state.needsUpgrade());
+        tagged = writer();
+        ProposalState.writeObject(tagged, state);
+        state = ProposalState.readObject(reader(tagged.toByteArray()));
+        assertEquals(Proposal.STATUS_ACTIVE, state.getStatus());
+        assertEquals(amount, state.getVotes().getAbstain());
+        assertEquals(5, state.getVersion());
+        assertFalse(state.needsUpgrade());
+
+        untagged = writer();
+        untagged.writeListOf(alice.getAddress(), start << 4 | Proposal.STATUS_CLOSED, 100L, IPFS_HASH);
+        var p = Proposal.readObject(reader(untagged.toByteArray()));
+        assertEquals(alice.getAddress(), p.getCreator());
+        assertEquals(start + 100, p.getEndTime());
+        assertEquals(Proposal.STATUS_CLOSED, p.getStatus());
+    }
+
+    @Test
+    void governanceConfig() {
+        var legacy = writer();
+        legacy.writeListOf(alice.getAddress(), TokenProxy.IRC2, BigInteger.ZERO, ICX);
+        var c = GovernanceConfig.readObject(reader(legacy.toByteArray()));
+        assertEquals(alice.getAddress(), c.getTokenAddress());
+        assertEquals(ICX, c.getMinimumThreshold());
+        assertEquals(BigInteger.ZERO, c.getQuorum());
+        assertEquals(GovernanceConfig.DEFAULT_PASS_THRESHOLD, c.getPassThreshold());
+        assertEquals(0, c.getMaxActiveProposals());
+        assertEquals(BigInteger.ZERO, c.getNetworkId());
+
+        c.setVotingRules(ICX.shiftLeft(10), 6667);
+        c.setMaxActiveProposals(3);
+        c.setNetworkId(BigInteger.TWO);
+        var current = writer();
+        GovernanceConfig.writeObject(current, c);
+        var d = GovernanceConfig.readObject(reader(current.toByteArray()));
+        assertEquals(TokenProxy.IRC2, d.getTokenType());
+        assertEquals(ICX.shiftLeft(10), d.getQuorum());
+        assertEquals(6667, d.getPassThreshold());
+        assertEquals(3, d.getMaxActiveProposals());
+        assertEquals(BigInteger.TWO, d.getNetworkId());
+    }
+}
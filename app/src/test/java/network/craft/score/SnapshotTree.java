@@ -0,0 +1,206 @@
+/*
+ * Copyright 2022 Craft Network
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package network.craft.score;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.PrintStream;
+import java.io.Reader;
+import java.math.BigInteger;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Offline builder of the balance snapshot tree verified by {@link MerkleProof}.
+ *
+ * <p>Usage: {@code ./gradlew app:snapshotTree -Pbalances=<csv> [-Pproofs=<output>]}.
+ * The input has one {@code address,balance} line per holder, the balance being an integer in the
+ * smallest token unit. The output starts with {@code root=<hex>} followed by one
+ * {@code address,balance,sibling:sibling:...} line per holder.
+ */
+public class SnapshotTree {
+    private final Map<String, BigInteger> balances;
+    private final Map<String, List<byte[]>> proofs = new LinkedHashMap<>();
+    private final byte[] root;
+
+    public SnapshotTree(Map<String, BigInteger> balances) {
+        if (balances.isEmpty()) {
+            throw new IllegalArgumentException("empty snapshot");
+        }
+        this.balances = balances;
+        List<String> holders = new ArrayList<>(balances.keySet());
+        Map<String, byte[]> leaves = new HashMap<>();
+        for (var e : balances.entrySet()) {
+            leaves.put(e.getKey(), hash((byte) 0, addressBytes(e.getKey()), e.getValue().toByteArray()));
+            proofs.put(e.getKey(), new ArrayList<>());
+        }
+        holders.sort((a, b) -> compare(leaves.get(a), leaves.get(b)));
+
+        List<byte[]> level = new ArrayList<>();
+        List<List<byte[]>> holderProofs = new ArrayList<>();
+        for (String holder : holders) {
+            level.add(leaves.get(holder));
+            holderProofs.add(proofs.get(holder));
+        }
+        this.root = build(level, holderProofs);
+    }
+
+    /**
+     * Builds a tree over the given leaves, in that order, and appends the proof of each leaf to the
+     * list at the same position. This is also the layout of the archived votes of a proposal.
+     *
+     * @return the root
+     */
+    static byte[] build(List<byte[]> leaves, List<List<byte[]>> proofs) {
+        List<byte[]> level = leaves;
+        // position of each leaf's node in the current level; an odd last node is carried up as is
+        int[] positions = new int[leaves.size()];
+        for (int i = 0; i < positions.length; i++) {
+            positions[i] = i;
+        }
+        while (level.size() > 1) {
+            for (int h = 0; h < positions.length; h++) {
+                int sibling = positions[h] ^ 1;
+                if (sibling < level.size()) {
+                    proofs.get(h).add(level.get(sibling));
+                }
+                positions[h] >>= 1;
+            }
+            List<byte[]> next = new ArrayList<>();
+            for (int i = 0; i < level.size(); i += 2) {
+                if (i + 1 == level.size()) {
+                    next.add(level.get(i));
+                } else {
+                    byte[] a = level.get(i);
+                    byte[] b = level.get(i + 1);
+                    next.add(compare(a, b) <= 0 ? hash((byte) 1, a, b) : hash((byte) 1, b, a));
+                }
+            }
+            level = next;
+        }
+        return level.get(0);
+    }
+
+    public static SnapshotTree fromCsv(Reader reader) throws IOException {
+        Map<String, BigInteger> balances = new LinkedHashMap<>();
+        var in = new BufferedReader(reader);
+        String line;
+        while ((line = in.readLine()) != null) {
+            line = line.trim();
+            if (line.isEmpty() || line.startsWith("#")) {
+                continue;
+            }
+            var fields = line.split(",");
+            if (fields.length != 2) {
+                throw new IllegalArgumentException("expected address,balance: " + line);
+            }
+            var address = fields[0].trim();
+            if (balances.put(address, new BigInteger(fields[1].trim())) != null) {
+                throw new IllegalArgumentException("duplicate holder: " + address);
+            }
+        }
+        return new SnapshotTree(balances);
+    }
+
+    public byte[] getRoot() {
+        return root;
+    }
+
+    public byte[][] getProof(String address) {
+        var proof = proofs.get(address);
+        if (proof == null) {
+            throw new IllegalArgumentException("not in snapshot: " + address);
+        }
+        return proof.toArray(new byte[0][]);
+    }
+
+    public void print(PrintStream out) {
+        out.println("root=" + hex(root));
+        for (var e : balances.entrySet()) {
+            var sb = new StringBuilder(e.getKey()).append(',').append(e.getValue()).append(',');
+            var proof = proofs.get(e.getKey());
+            for (int i = 0; i < proof.size(); i++) {
+                sb.append(i == 0 ? "" : ":").append(hex(proof.get(i)));
+            }
+            out.println(sb);
+        }
+    }
+
+    // same layout as score.Address#toByteArray: a type prefix followed by the 20-byte body
+    static byte[] addressBytes(String address) {
+        if (address.length() != 42 || !(address.startsWith("hx") || address.startsWith("cx"))) {
+            throw new IllegalArgumentException("invalid address: " + address);
+        }
+        byte[] out = new byte[21];
+        out[0] = (byte) (address.startsWith("hx") ? 0 : 1);
+        for (int i = 0; i < 20; i++) {
+            out[i + 1] = (byte) Integer.parseInt(address.substring(2 + 2 * i, 4 + 2 * i), 16);
+        }
+        return out;
+    }
+
+    private static byte[] hash(byte prefix, byte[] a, byte[] b) {
+        try {
+            var md = MessageDigest.getInstance("SHA3-256");
+            md.update(prefix);
+            md.update(a);
+            md.update(b);
+            return md.digest();
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+
+    private static int compare(byte[] a, byte[] b) {
+        return Arrays.compareUnsigned(a, b);
+    }
+
+    static String hex(byte[] bytes) {
+        var sb = new StringBuilder("0x");
+        for (byte b : bytes) {
+            sb.append(Character.forDigit((b >> 4) & 0xf, 16)).append(Character.forDigit(b & 0xf, 16));
+        }
+        return sb.toString();
+    }
+
+    public static void main(String[] args) throws IOException {
+        if (args.length < 1) {
+            System.err.println("usage: SnapshotTree <balances.csv> [output]");
+            System.exit(1);
+        }
+        SnapshotTree tree;
+        try (Reader r = Files.newBufferedReader(Path.of(args[0]), StandardCharsets.UTF_8)) {
+            tree = fromCsv(r);
+        }
+        if (args.length > 1) {
+            try (var out = new PrintStream(Files.newOutputStream(Path.of(args[1])), false, StandardCharsets.UTF_8)) {
+                tree.print(out);
+            }
+        } else {
+            tree.print(System.out);
+        }
+    }
+}
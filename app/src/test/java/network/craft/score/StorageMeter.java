@@ -0,0 +1,467 @@
+/*
+ * Copyright 2022 Craft Network
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package network.craft.score;
+
+import com.iconloop.score.test.Account;
+import com.iconloop.score.test.Score;
+import com.iconloop.score.test.ServiceManager;
+import org.mockito.MockedStatic;
+import org.mockito.Mockito;
+import score.Address;
+import score.ArrayDB;
+import score.BranchDB;
+import score.Context;
+import score.DictDB;
+import score.ObjectWriter;
+import score.VarDB;
+import score.annotation.EventLog;
+import score.annotation.External;
+
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Method;
+import java.lang.reflect.Proxy;
+import java.math.BigInteger;
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyString;
+
+/**
+ * Meters the transactions of a deployed {@link MeteredAgora} and prices them with the ICON step schedule.
+ *
+ * <p>The unit-test {@code ServiceManager} does not meter steps. While the contract is deployed or invoked
+ * through the meter, every database it creates with {@code Context} is wrapped in a proxy that records the key
+ * and the encoded size of every value read and written before passing the access on; this covers the fields
+ * of the contract as well as the databases it opens on demand. The inter-SCORE calls are counted by
+ * {@link MeteredIRC2Token} and {@link MeteredIRC31Token}, and the event logs by {@link MeteredAgora}.
+ */
+final class StorageMeter {
+    // the transaction being metered, if any
+    private static Footprint recording;
+
+    private final Score score;
+
+    private StorageMeter(Score score) {
+        this.score = score;
+    }
+
+    /**
+     * Step schedule of the ICON mainnet (revision 9 and later).
+     */
+    static class StepCost {
+        static final long DEFAULT = 100_000;
+        static final long CONTRACT_CALL = 25_000;
+        static final long INPUT = 200;
+        static final long GET_BASE = 3_000;
+        static final long GET = 25;
+        static final long SET_BASE = 10_000;
+        static final long SET = 320;
+        static final long LOG_BASE = 5_000;
+        static final long LOG = 100;
+    }
+
+    /**
+     * A storage access: the database, the encoded key, and the encoded size of the value read or written,
+     * zero for a missing value or a deletion.
+     */
+    static class Access {
+        final boolean write;
+        final String db;
+        final byte[] key;
+        final int size;
+
+        Access(boolean write, String db, byte[] key, int size) {
+            this.write = write;
+            this.db = db;
+            this.key = key;
+            this.size = size;
+        }
+    }
+
+    /**
+     * The storage accesses, calls and logs of a single transaction, with the steps they cost,
+     * the bytes written and the bytes of the entries added to the state, keys included.
+     */
+    static class Footprint {
+        private final List<Access> accesses = new ArrayList<>();
+        private long steps = StepCost.DEFAULT;
+        private long bytesWritten;
+        private long bytesAdded;
+        private int calls;
+        private long nanos;
+
+        List<Access> getAccesses() {
+            return accesses;
+        }
+
+        long getSteps() {
+            return steps;
+        }
+
+        long getBytesWritten() {
+            return bytesWritten;
+        }
+
+        long getBytesAdded() {
+            return bytesAdded;
+        }
+
+        int getCalls() {
+            return calls;
+        }
+
+        // the time spent in the call, metering included
+        long getNanos() {
+            return nanos;
+        }
+
+        private void input(String method, Object... params) {
+            var sb = new StringBuilder(method);
+            for (Object p : params) {
+                appendParam(sb, p);
+            }
+            steps += StepCost.INPUT * sb.length();
+        }
+
+        // a parameter as it is sent in the transaction: integers and bytes in hex, arrays element by element
+        private static void appendParam(StringBuilder sb, Object p) {
+            if (p instanceof BigInteger) {
+                sb.append("0x").append(((BigInteger) p).toString(16));
+            } else if (p instanceof byte[]) {
+                sb.append("0x");
+                for (byte b : (byte[]) p) {
+                    sb.append(Character.forDigit((b >> 4) & 0xf, 16)).append(Character.forDigit(b & 0xf, 16));
+                }
+            } else if (p instanceof Object[]) {
+                for (Object e : (Object[]) p) {
+                    appendParam(sb, e);
+                }
+            } else {
+                sb.append(p);
+            }
+        }
+
+        private void get(String db, byte[] key, int size) {
+            accesses.add(new Access(false, db, key, size));
+            steps += StepCost.GET_BASE + StepCost.GET * size;
+        }
+
+        private void set(String db, byte[] key, int size, boolean added) {
+            accesses.add(new Access(true, db, key, size));
+            steps += StepCost.SET_BASE + StepCost.SET * size;
+            bytesWritten += size;
+            if (added) {
+                bytesAdded += key.length + size;
+            }
+        }
+
+        private void call() {
+            calls++;
+            steps += StepCost.CONTRACT_CALL;
+        }
+
+        private void log(String signature, Object... params) {
+            int size = signature.length();
+            for (Object p : params) {
+                size += sizeOf(p);
+            }
+            steps += StepCost.LOG_BASE + StepCost.LOG * size;
+        }
+    }
+
+    /**
+     * Deploys a {@link MeteredAgora} with its databases metered.
+     */
+    static StorageMeter deploy(ServiceManager sm, Account owner) throws Exception {
+        try (var ignored = meterDatabases()) {
+            return new StorageMeter(sm.deploy(owner, MeteredAgora.class));
+        }
+    }
+
+    Score getScore() {
+        return score;
+    }
+
+    /**
+     * Invokes an external and returns what it cost.
+     */
+    Footprint invoke(Account from, String method, Object... params) {
+        var fp = new Footprint();
+        fp.input(method, params);
+        recording = fp;
+        long start = System.nanoTime();
+        try (var ignored = meterDatabases()) {
+            score.invoke(from, method, params);
+        } finally {
+            fp.nanos = System.nanoTime() - start;
+            recording = null;
+        }
+        return fp;
+    }
+
+    // Wraps the databases created with `Context` until closed.
+    private static MockedStatic<Context> meterDatabases() {
+        var context = Mockito.mockStatic(Context.class, Mockito.CALLS_REAL_METHODS);
+        context.when(() -> Context.newVarDB(anyString(), any()))
+                .thenAnswer(inv -> meter(VarDB.class, inv.getArgument(0), inv.callRealMethod()));
+        context.when(() -> Context.newDictDB(anyString(), any()))
+                .thenAnswer(inv -> meter(DictDB.class, inv.getArgument(0), inv.callRealMethod()));
+        context.when(() -> Context.newArrayDB(anyString(), any()))
+                .thenAnswer(inv -> meter(ArrayDB.class, inv.getArgument(0), inv.callRealMethod()));
+        context.when(() -> Context.newBranchDB(anyString(), any()))
+                .thenAnswer(inv -> meter(BranchDB.class, inv.getArgument(0), inv.callRealMethod()));
+        return context;
+    }
+
+    // called by the metered tokens for each inter-SCORE call they answer
+    static void countCall() {
+        if (recording != null) {
+            recording.call();
+        }
+    }
+
+    static void log(String signature, Object... params) {
+        if (recording != null) {
+            recording.log(signature, params);
+        }
+    }
+
+    static int sizeOf(Object value) {
+        return value == null ? 0 : encode(value).length;
+    }
+
+    // the RLPn encoding of a value, records through their own writeObject
+    private static byte[] encode(Object value) {
+        var w = Context.newByteArrayObjectWriter("RLPn");
+        Method writeObject = null;
+        try {
+            writeObject = value.getClass().getMethod("writeObject", ObjectWriter.class, value.getClass());
+        } catch (NoSuchMethodException e) {
+            w.write(value);
+        }
+        if (writeObject != null) {
+            try {
+                writeObject.invoke(null, w, value);
+            } catch (IllegalAccessException | InvocationTargetException e) {
+                throw new IllegalStateException(e);
+            }
+        }
+        return w.toByteArray();
+    }
+
+    private static Object meter(Class<?> type, String name, Object db) {
+        return Proxy.newProxyInstance(StorageMeter.class.getClassLoader(), new Class<?>[]{type},
+                (proxy, method, args) -> access(type, name, new byte[0], db, method, args));
+    }
+
+    // Meters one call on a database, whose keys in storage start with `prefix` for the databases of a branch.
+    // ArrayDB keeps its size in storage: reading an element checks it, adding or removing one updates it.
+    private static Object access(Class<?> type, String name, byte[] prefix, Object db, Method method,
+                                 Object[] args) throws Throwable {
+        var fp = recording;
+        var m = method.getName();
+        if (fp == null || m.equals("toString") || m.equals("hashCode") || m.equals("equals")) {
+            return forward(db, method, args);
+        }
+        if (type == BranchDB.class) {
+            // every branch of this contract holds DictDBs
+            var sub = forward(db, method, args);
+            var key = concat(prefix, encode(args[0]));
+            return Proxy.newProxyInstance(StorageMeter.class.getClassLoader(), new Class<?>[]{DictDB.class},
+                    (p, subMethod, subArgs) -> access(DictDB.class, name, key, sub, subMethod, subArgs));
+        }
+        if (type == VarDB.class) {
+            var vdb = (VarDB<?>) db;
+            switch (m) {
+                case "get":
+                case "getOrDefault":
+                    fp.get(name, prefix, sizeOf(vdb.get()));
+                    break;
+                case "set":
+                    fp.set(name, prefix, sizeOf(args[0]), vdb.get() == null && args[0] != null);
+                    break;
+                default:
+                    throw new UnsupportedOperationException(m);
+            }
+            return forward(db, method, args);
+        }
+        if (type == DictDB.class) {
+            @SuppressWarnings("unchecked")
+            var ddb = (DictDB<Object, ?>) db;
+            var key = concat(prefix, encode(args[0]));
+            switch (m) {
+                case "get":
+                case "getOrDefault":
+                    fp.get(name, key, sizeOf(ddb.get(args[0])));
+                    break;
+                case "set":
+                    fp.set(name, key, sizeOf(args[1]), ddb.get(args[0]) == null && args[1] != null);
+                    break;
+                default:
+                    throw new UnsupportedOperationException(m);
+            }
+            return forward(db, method, args);
+        }
+        var adb = (ArrayDB<?>) db;
+        int size = adb.size();
+        fp.get(name, prefix, sizeOf(size));
+        switch (m) {
+            case "size":
+                break;
+            case "get":
+                fp.get(name, concat(prefix, encode(args[0])), sizeOf(adb.get((Integer) args[0])));
+                break;
+            case "set":
+                fp.set(name, concat(prefix, encode(args[0])), sizeOf(args[1]), false);
+                break;
+            case "add":
+                fp.set(name, concat(prefix, encode(size)), sizeOf(args[0]), true);
+                fp.set(name, prefix, sizeOf(size + 1), size == 0);
+                break;
+            case "pop":
+            case "removeLast":
+                var last = concat(prefix, encode(size - 1));
+                if (m.equals("pop")) {
+                    fp.get(name, last, sizeOf(adb.get(size - 1)));
+                }
+                fp.set(name, last, 0, false);
+                fp.set(name, prefix, size == 1 ? 0 : sizeOf(size - 1), false);
+                break;
+            default:
+                throw new UnsupportedOperationException(m);
+        }
+        return forward(db, method, args);
+    }
+
+    private static Object forward(Object db, Method method, Object[] args) throws Throwable {
+        try {
+            return method.invoke(db, args);
+        } catch (InvocationTargetException e) {
+            throw e.getCause();
+        }
+    }
+
+    private static byte[] concat(byte[] a, byte[] b) {
+        var out = new byte[a.length + b.length];
+        System.arraycopy(a, 0, out, 0, a.length);
+        System.arraycopy(b, 0, out, a.length, b.length);
+        return out;
+    }
+
+    /**
+     * {@link AgoraImpl} with its event logs metered on their way out.
+     */
+    public static class MeteredAgora extends AgoraImpl {
+        @Override
+        @EventLog(indexed=1)
+        public void ProposalSubmitted(BigInteger _proposalId, Address _creator) {
+            super.ProposalSubmitted(_proposalId, _creator);
+            log("ProposalSubmitted(int,Address)", _proposalId, _creator);
+        }
+
+        @Override
+        @EventLog(indexed=1)
+        public void ProposalCanceled(BigInteger _proposalId) {
+            super.ProposalCanceled(_proposalId);
+            log("ProposalCanceled(int)", _proposalId);
+        }
+
+        @Override
+        @EventLog(indexed=1)
+        public void ProposalClosed(BigInteger _proposalId) {
+            super.ProposalClosed(_proposalId);
+            log("ProposalClosed(int)", _proposalId);
+        }
+
+        @Override
+        @EventLog(indexed=2)
+        public void VoteCast(BigInteger _proposalId, Address _voter, String _vote, BigInteger _power) {
+            super.VoteCast(_proposalId, _voter, _vote, _power);
+            log("VoteCast(int,Address,str,int)", _proposalId, _voter, _vote, _power);
+        }
+
+        @Override
+        @EventLog(indexed=1)
+        public void VotesArchived(BigInteger _proposalId, byte[] _root) {
+            super.VotesArchived(_proposalId, _root);
+            log("VotesArchived(int,bytes)", _proposalId, _root);
+        }
+
+        @Override
+        @EventLog(indexed=2)
+        public void Delegated(Address _delegator, Address _delegate, BigInteger _amount) {
+            super.Delegated(_delegator, _delegate, _amount);
+            log("Delegated(Address,Address,int)", _delegator, _delegate, _amount);
+        }
+
+        @Override
+        @EventLog(indexed=2)
+        public void Undelegated(Address _delegator, Address _delegate) {
+            super.Undelegated(_delegator, _delegate);
+            log("Undelegated(Address,Address)", _delegator, _delegate);
+        }
+
+        @Override
+        @EventLog(indexed=2)
+        public void VoteChanged(BigInteger _proposalId, Address _voter, String _oldVote, BigInteger _oldPower,
+                                String _newVote, BigInteger _newPower) {
+            super.VoteChanged(_proposalId, _voter, _oldVote, _oldPower, _newVote, _newPower);
+            log("VoteChanged(int,Address,str,int,str,int)", _proposalId, _voter, _oldVote, _oldPower,
+                    _newVote, _newPower);
+        }
+    }
+
+    /**
+     * The test token, counting the balance lookups of the metered calls.
+     */
+    public static class MeteredIRC2Token extends AgoraUnitTest.IRC2TestToken {
+        public MeteredIRC2Token(BigInteger initialSupply) {
+            super(initialSupply);
+        }
+
+        @Override
+        @External(readonly=true)
+        public BigInteger balanceOf(Address _owner) {
+            countCall();
+            return super.balanceOf(_owner);
+        }
+    }
+
+    /**
+     * The IRC-31 test token, counting the balance lookups of the metered calls.
+     */
+    public static class MeteredIRC31Token extends AgoraUnitTest.IRC31TestToken {
+        public MeteredIRC31Token(BigInteger id, BigInteger initialSupply) {
+            super(id, initialSupply);
+        }
+
+        @Override
+        @External(readonly=true)
+        public BigInteger balanceOf(Address _owner, BigInteger _id) {
+            countCall();
+            return super.balanceOf(_owner, _id);
+        }
+
+        @Override
+        @External(readonly=true)
+        public List<BigInteger> balanceOfBatch(Address[] _owners, BigInteger[] _ids) {
+            countCall();
+            return super.balanceOfBatch(_owners, _ids);
+        }
+    }
+}
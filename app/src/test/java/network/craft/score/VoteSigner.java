@@ -0,0 +1,128 @@
+/*
+ * Copyright 2022 Craft Network
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package network.craft.score;
+
+import org.bouncycastle.asn1.x9.X9ECParameters;
+import org.bouncycastle.crypto.digests.SHA256Digest;
+import org.bouncycastle.crypto.ec.CustomNamedCurves;
+import org.bouncycastle.crypto.params.ECDomainParameters;
+import org.bouncycastle.crypto.params.ECPrivateKeyParameters;
+import org.bouncycastle.crypto.signers.ECDSASigner;
+import org.bouncycastle.crypto.signers.HMacDSAKCalculator;
+import org.bouncycastle.math.ec.ECAlgorithms;
+import org.bouncycastle.math.ec.ECPoint;
+import score.Address;
+import score.Context;
+
+import java.math.BigInteger;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.security.SecureRandom;
+import java.util.Arrays;
+
+/**
+ * An off-chain voter: a secp256k1 key pair that signs the votes relayed by {@code submitSignedVotes}.
+ */
+class VoteSigner {
+    private static final X9ECParameters CURVE = CustomNamedCurves.getByName("secp256k1");
+    private static final ECDomainParameters DOMAIN =
+            new ECDomainParameters(CURVE.getCurve(), CURVE.getG(), CURVE.getN(), CURVE.getH());
+    private static final SecureRandom random = new SecureRandom();
+
+    private final BigInteger privateKey;
+    private final byte[] publicKey;
+    private final Address address;
+
+    VoteSigner() {
+        BigInteger key;
+        do {
+            key = new BigInteger(256, random);
+        } while (key.signum() == 0 || key.compareTo(DOMAIN.getN()) >= 0);
+        privateKey = key;
+        publicKey = DOMAIN.getG().multiply(key).normalize().getEncoded(false);
+        // hx followed by the last 20 bytes of the hash of the key without its 0x04 prefix
+        var hash = sha3(Arrays.copyOfRange(publicKey, 1, publicKey.length));
+        var raw = new byte[21];
+        System.arraycopy(hash, hash.length - 20, raw, 1, 20);
+        address = new Address(raw);
+    }
+
+    Address getAddress() {
+        return address;
+    }
+
+    /**
+     * Signs a vote as {@code submitSignedVotes} expects it: the hash of {@code [score, nid, pid, vote, nonce]}
+     * in r, s and the recovery id.
+     */
+    byte[] sign(Address score, BigInteger nid, BigInteger pid, String vote, BigInteger nonce) {
+        var w = Context.newByteArrayObjectWriter("RLPn");
+        w.writeListOf(score, nid, pid, vote, nonce);
+        var hash = sha3(w.toByteArray());
+
+        var signer = new ECDSASigner(new HMacDSAKCalculator(new SHA256Digest()));
+        signer.init(true, new ECPrivateKeyParameters(privateKey, DOMAIN));
+        var rs = signer.generateSignature(hash);
+        var r = rs[0];
+        var s = rs[1];
+        // the canonical form has the lower of the two s values
+        if (s.compareTo(DOMAIN.getN().shiftRight(1)) > 0) {
+            s = DOMAIN.getN().subtract(s);
+        }
+        var signature = new byte[65];
+        System.arraycopy(toBytes32(r), 0, signature, 0, 32);
+        System.arraycopy(toBytes32(s), 0, signature, 32, 32);
+        signature[64] = (byte) recoveryId(hash, r, s);
+        return signature;
+    }
+
+    // the parity of R, found by recovering the key from each candidate
+    private int recoveryId(byte[] hash, BigInteger r, BigInteger s) {
+        var n = DOMAIN.getN();
+        var e = new BigInteger(1, hash);
+        var rInv = r.modInverse(n);
+        for (int id = 0; id < 2; id++) {
+            var encoded = new byte[33];
+            encoded[0] = (byte) (0x02 | id);
+            System.arraycopy(toBytes32(r), 0, encoded, 1, 32);
+            ECPoint point = DOMAIN.getCurve().decodePoint(encoded);
+            // Q = r^-1 (sR - eG)
+            var q = ECAlgorithms.sumOfTwoMultiplies(DOMAIN.getG(), rInv.multiply(e.negate()).mod(n),
+                    point, rInv.multiply(s).mod(n)).normalize();
+            if (Arrays.equals(q.getEncoded(false), publicKey)) {
+                return id;
+            }
+        }
+        throw new IllegalStateException("unrecoverable signature");
+    }
+
+    private static byte[] toBytes32(BigInteger value) {
+        var bytes = value.toByteArray();
+        var out = new byte[32];
+        int length = Math.min(bytes.length, 32);
+        System.arraycopy(bytes, bytes.length - length, out, 32 - length, length);
+        return out;
+    }
+
+    private static byte[] sha3(byte[] data) {
+        try {
+            return MessageDigest.getInstance("SHA3-256").digest(data);
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+}
@@ -0,0 +1,86 @@
+/*
+ * Copyright 2022 Craft Network
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package network.craft.indexer;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * An event log in the shape of the {@code eventLogs} entries of an ICON transaction result.
+ */
+public class EventLog {
+    private final String scoreAddress;
+    private final List<String> indexed;
+    private final List<String> data;
+
+    public EventLog(String scoreAddress, List<String> indexed, List<String> data) {
+        this.scoreAddress = scoreAddress;
+        this.indexed = indexed;
+        this.data = data;
+    }
+
+    public String getScoreAddress() {
+        return scoreAddress;
+    }
+
+    public String getSignature() {
+        return indexed.get(0);
+    }
+
+    public String indexed(int i) {
+        return indexed.get(i);
+    }
+
+    public String data(int i) {
+        return data.get(i);
+    }
+
+    @SuppressWarnings("unchecked")
+    public static EventLog fromJson(String line) {
+        var map = (Map<String, Object>) Json.parse(line);
+        var data = (List<String>) map.get("data");
+        return new EventLog(
+                (String) map.get("scoreAddress"),
+                (List<String>) map.get("indexed"),
+                data != null ? data : List.of());
+    }
+
+    /**
+     * Reads one JSON event log per line, skipping blank lines.
+     */
+    public static class Reader {
+        private final BufferedReader in;
+
+        public Reader(java.io.Reader in) {
+            this.in = in instanceof BufferedReader ? (BufferedReader) in : new BufferedReader(in, 1 << 16);
+        }
+
+        public EventLog next() throws IOException {
+            String line;
+            do {
+                line = in.readLine();
+                if (line == null) {
+                    return null;
+                }
+                line = line.trim();
+            } while (line.isEmpty());
+            return fromJson(line);
+        }
+    }
+}
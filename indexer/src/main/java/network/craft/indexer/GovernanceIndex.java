@@ -0,0 +1,337 @@
+/*
+ * Copyright 2022 Craft Network
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package network.craft.indexer;
+
+import java.math.BigInteger;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * In-memory state of an Agora SCORE rebuilt from its event logs.
+ *
+ * <p>Proposals and addresses are mapped to dense {@code int} slots, and every per-proposal or per-vote
+ * attribute lives in a primitive array indexed by slot. A ballot is the current vote of one address
+ * on one proposal; the ballots of an address are chained into a per-voter list.
+ */
+public class GovernanceIndex {
+    public static final String PROPOSAL_SUBMITTED = "ProposalSubmitted(int,Address)";
+    public static final String PROPOSAL_CANCELED = "ProposalCanceled(int)";
+    public static final String PROPOSAL_CLOSED = "ProposalClosed(int)";
+    public static final String VOTE_CAST = "VoteCast(int,Address,str,int)";
+
+    public static final int STATUS_ACTIVE = 1;
+    public static final int STATUS_CLOSED = 2;
+    public static final int STATUS_CANCELED = 3;
+    public static final List<String> CHOICES = List.of("for", "against", "abstain");
+    // every proposal has room for the most choices a multi-choice proposal can have
+    public static final int MAX_CHOICES = 16;
+
+    // proposals
+    private final LongIntMap proposalSlots = new LongIntMap(1 << 10);
+    private long[] proposalIds = new long[1 << 10];
+    private byte[] statuses = new byte[1 << 10];
+    private int[] creators = new int[1 << 10];
+    private int[] voterCounts = new int[1 << 10];
+    private boolean[] multiChoice = new boolean[1 << 10];
+    private BigInteger[] tallies = new BigInteger[MAX_CHOICES << 10];
+    private int proposalCount;
+
+    // addresses
+    private final Map<String, Integer> addressSlots = new HashMap<>();
+    private final List<String> addresses = new ArrayList<>();
+    private int[] firstBallot = new int[1 << 10];
+
+    // ballots, keyed by (proposal slot << 32 | address slot)
+    private final LongIntMap ballotSlots = new LongIntMap(1 << 16);
+    private int[] ballotProposals = new int[1 << 16];
+    private byte[] ballotChoices = new byte[1 << 16];
+    private BigInteger[] ballotPowers = new BigInteger[1 << 16];
+    private int[] nextBallot = new int[1 << 16];
+    private int ballotCount;
+
+    private long eventCount;
+
+    /**
+     * Applies an event log.
+     *
+     * @return false if the event is not one the index keeps track of
+     */
+    public boolean apply(EventLog e) {
+        switch (e.getSignature()) {
+            case PROPOSAL_SUBMITTED: {
+                int p = proposalSlot(parseLong(e.indexed(1)));
+                creators[p] = addressSlot(e.data(0));
+                statuses[p] = STATUS_ACTIVE;
+                break;
+            }
+            case PROPOSAL_CANCELED:
+                statuses[proposalSlot(parseLong(e.indexed(1)))] = STATUS_CANCELED;
+                break;
+            case PROPOSAL_CLOSED:
+                statuses[proposalSlot(parseLong(e.indexed(1)))] = STATUS_CLOSED;
+                break;
+            case VOTE_CAST:
+                castVote(parseLong(e.indexed(1)), e.indexed(2), e.data(0), parseBigInteger(e.data(1)));
+                break;
+            default:
+                return false;
+        }
+        eventCount++;
+        return true;
+    }
+
+    /**
+     * Sets a proposal as read from a state export, replacing what the index knew of it.
+     * Its ballots are restored separately, as the export may not list all of them.
+     */
+    public void restoreProposal(long pid, String creator, int status, BigInteger[] tally, boolean multi, int voters) {
+        if (tally.length > MAX_CHOICES) {
+            throw new IllegalArgumentException("too many choices in proposal " + pid);
+        }
+        int p = proposalSlot(pid);
+        creators[p] = creator == null ? -1 : addressSlot(creator);
+        statuses[p] = (byte) status;
+        voterCounts[p] = voters;
+        multiChoice[p] = multi;
+        System.arraycopy(tally, 0, tallies, p * MAX_CHOICES, tally.length);
+    }
+
+    /**
+     * Sets a ballot as read from a state export. The tally and the voter count are left alone,
+     * as they come with the proposal.
+     */
+    public void restoreVote(long pid, String voter, int choice, BigInteger power) {
+        if (choice < 0) {
+            throw new IllegalArgumentException("unknown choice in vote of " + voter + " on " + pid);
+        }
+        int p = proposalSlot(pid);
+        int a = addressSlot(voter);
+        long key = (long) p << 32 | a;
+        int b = ballotSlots.get(key);
+        if (b < 0) {
+            b = newBallot(p, a);
+            ballotSlots.put(key, b);
+        }
+        ballotChoices[b] = (byte) choice;
+        ballotPowers[b] = power;
+    }
+
+    /**
+     * Returns the choice named by a vote: a preset name, or the index of a choice of a multi-choice proposal.
+     *
+     * @return the choice, or -1 if the name is unknown
+     */
+    public static int choiceOf(String vote) {
+        int choice = CHOICES.indexOf(vote);
+        if (choice >= 0 || vote.isEmpty() || vote.length() > 2 || !isDigits(vote)) {
+            return choice;
+        }
+        choice = Integer.parseInt(vote);
+        return choice < MAX_CHOICES ? choice : -1;
+    }
+
+    private static boolean isDigits(String value) {
+        for (int i = 0; i < value.length(); i++) {
+            if (value.charAt(i) < '0' || value.charAt(i) > '9') {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    private void castVote(long pid, String voter, String vote, BigInteger power) {
+        int choice = choiceOf(vote);
+        if (choice < 0) {
+            throw new IllegalArgumentException("unknown choice in vote of " + voter + " on " + pid);
+        }
+        int p = proposalSlot(pid);
+        // only multi-choice proposals have their choices named by index
+        multiChoice[p] = isDigits(vote);
+        int a = addressSlot(voter);
+        long key = (long) p << 32 | a;
+        int b = ballotSlots.get(key);
+        int base = p * MAX_CHOICES;
+        if (b < 0) {
+            b = newBallot(p, a);
+            ballotSlots.put(key, b);
+            voterCounts[p]++;
+        } else {
+            // the last VoteCast of a voter replaces its previous vote
+            int old = base + ballotChoices[b];
+            tallies[old] = tallies[old].subtract(ballotPowers[b]);
+        }
+        ballotChoices[b] = (byte) choice;
+        ballotPowers[b] = power;
+        tallies[base + choice] = tallies[base + choice].add(power);
+    }
+
+    private int newBallot(int p, int a) {
+        int b = ballotCount++;
+        if (b == ballotProposals.length) {
+            int n = b * 2;
+            ballotProposals = Arrays.copyOf(ballotProposals, n);
+            ballotChoices = Arrays.copyOf(ballotChoices, n);
+            ballotPowers = Arrays.copyOf(ballotPowers, n);
+            nextBallot = Arrays.copyOf(nextBallot, n);
+        }
+        ballotProposals[b] = p;
+        nextBallot[b] = firstBallot[a];
+        firstBallot[a] = b + 1;
+        return b;
+    }
+
+    private int proposalSlot(long pid) {
+        int p = proposalSlots.get(pid);
+        if (p >= 0) {
+            return p;
+        }
+        p = proposalCount++;
+        if (p == proposalIds.length) {
+            int n = p * 2;
+            proposalIds = Arrays.copyOf(proposalIds, n);
+            statuses = Arrays.copyOf(statuses, n);
+            creators = Arrays.copyOf(creators, n);
+            voterCounts = Arrays.copyOf(voterCounts, n);
+            multiChoice = Arrays.copyOf(multiChoice, n);
+            tallies = Arrays.copyOf(tallies, n * MAX_CHOICES);
+        }
+        proposalIds[p] = pid;
+        creators[p] = -1;
+        // a proposal seen first through its votes is known to have been active
+        statuses[p] = STATUS_ACTIVE;
+        multiChoice[p] = false;
+        Arrays.fill(tallies, p * MAX_CHOICES, (p + 1) * MAX_CHOICES, BigInteger.ZERO);
+        proposalSlots.put(pid, p);
+        return p;
+    }
+
+    private int addressSlot(String address) {
+        var a = addressSlots.get(address);
+        if (a != null) {
+            return a;
+        }
+        int slot = addresses.size();
+        addresses.add(address);
+        addressSlots.put(address, slot);
+        if (slot == firstBallot.length) {
+            firstBallot = Arrays.copyOf(firstBallot, slot * 2);
+        }
+        return slot;
+    }
+
+    public long getEventCount() {
+        return eventCount;
+    }
+
+    public int getProposalCount() {
+        return proposalCount;
+    }
+
+    public int getAddressCount() {
+        return addresses.size();
+    }
+
+    public int getBallotCount() {
+        return ballotCount;
+    }
+
+    public long[] getProposalIds() {
+        return Arrays.copyOf(proposalIds, proposalCount);
+    }
+
+    public boolean hasProposal(long pid) {
+        return proposalSlots.get(pid) >= 0;
+    }
+
+    private int existingProposal(long pid) {
+        int p = proposalSlots.get(pid);
+        if (p < 0) {
+            throw new IllegalArgumentException("unknown proposal " + pid);
+        }
+        return p;
+    }
+
+    public int getStatus(long pid) {
+        return statuses[existingProposal(pid)];
+    }
+
+    public String getCreator(long pid) {
+        int c = creators[existingProposal(pid)];
+        return c < 0 ? null : addresses.get(c);
+    }
+
+    public BigInteger getTally(long pid, int choice) {
+        return tallies[existingProposal(pid) * MAX_CHOICES + choice];
+    }
+
+    public boolean isMultiChoice(long pid) {
+        return multiChoice[existingProposal(pid)];
+    }
+
+    public int getVoterCount(long pid) {
+        return voterCounts[existingProposal(pid)];
+    }
+
+    /**
+     * Returns the current vote of an address on a proposal.
+     *
+     * @return the choice and the power, or null if the address did not vote
+     */
+    public Object[] getVote(long pid, String voter) {
+        int p = proposalSlots.get(pid);
+        var a = addressSlots.get(voter);
+        if (p < 0 || a == null) {
+            return null;
+        }
+        int b = ballotSlots.get((long) p << 32 | a);
+        if (b < 0) {
+            return null;
+        }
+        int choice = ballotChoices[b];
+        return new Object[]{multiChoice[p] ? Integer.toString(choice) : CHOICES.get(choice), ballotPowers[b]};
+    }
+
+    /**
+     * Returns the ids of the proposals an address voted on, most recent first.
+     */
+    public long[] getVotedProposals(String voter) {
+        var a = addressSlots.get(voter);
+        if (a == null) {
+            return new long[0];
+        }
+        long[] out = new long[8];
+        int n = 0;
+        for (int b = firstBallot[a] - 1; b >= 0; b = nextBallot[b] - 1) {
+            if (n == out.length) {
+                out = Arrays.copyOf(out, n * 2);
+            }
+            out[n++] = proposalIds[ballotProposals[b]];
+        }
+        return Arrays.copyOf(out, n);
+    }
+
+    static long parseLong(String value) {
+        return value.startsWith("0x") ? Long.parseLong(value.substring(2), 16) : Long.parseLong(value);
+    }
+
+    static BigInteger parseBigInteger(String value) {
+        return value.startsWith("0x") ? new BigInteger(value.substring(2), 16) : new BigInteger(value);
+    }
+}
@@ -0,0 +1,112 @@
+/*
+ * Copyright 2022 Craft Network
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package network.craft.indexer;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+
+/**
+ * Rebuilds the state of an Agora SCORE from an event log file and optionally verifies it.
+ *
+ * <pre>
+ * Indexer &lt;events.jsonl&gt; [--proposals &lt;proposals.jsonl&gt;] [--score &lt;address&gt;]
+ * </pre>
+ *
+ * The event file holds one {@code eventLogs} entry per line, in block order. The proposal file holds
+ * one {@code getProposal} result per line. With {@code --score}, events of other contracts are skipped.
+ */
+public class Indexer {
+    private final GovernanceIndex index = new GovernanceIndex();
+    private final String score;
+
+    public Indexer(String score) {
+        this.score = score;
+    }
+
+    public GovernanceIndex getIndex() {
+        return index;
+    }
+
+    /**
+     * Applies all events read from the given reader.
+     *
+     * @return the number of event logs read
+     */
+    public long replay(java.io.Reader in) throws IOException {
+        var reader = new EventLog.Reader(in);
+        long count = 0;
+        for (EventLog e = reader.next(); e != null; e = reader.next()) {
+            count++;
+            if (score == null || score.equals(e.getScoreAddress())) {
+                index.apply(e);
+            }
+        }
+        return count;
+    }
+
+    public int verify(java.io.Reader in) throws IOException {
+        var errors = new ProposalVerifier(index).verify(in);
+        errors.forEach(System.err::println);
+        return errors.size();
+    }
+
+    public static void main(String[] args) throws IOException {
+        String events = null, proposals = null, score = null;
+        for (int i = 0; i < args.length; i++) {
+            switch (args[i]) {
+                case "--proposals":
+                    proposals = args[++i];
+                    break;
+                case "--score":
+                    score = args[++i];
+                    break;
+                default:
+                    events = args[i];
+            }
+        }
+        if (events == null) {
+            System.err.println("usage: Indexer <events.jsonl> [--proposals <proposals.jsonl>] [--score <address>]");
+            System.exit(2);
+        }
+
+        var indexer = new Indexer(score);
+        long start = System.nanoTime();
+        long read;
+        try (var in = Files.newBufferedReader(Path.of(events), StandardCharsets.UTF_8)) {
+            read = indexer.replay(in);
+        }
+        double seconds = (System.nanoTime() - start) / 1e9;
+        var index = indexer.getIndex();
+        System.out.printf("replayed %d events (%d applied) in %.2fs: %.0f events/s%n",
+                read, index.getEventCount(), seconds, read / Math.max(seconds, 1e-9));
+        System.out.printf("proposals=%d addresses=%d ballots=%d%n",
+                index.getProposalCount(), index.getAddressCount(), index.getBallotCount());
+
+        if (proposals != null) {
+            int mismatches;
+            try (var in = Files.newBufferedReader(Path.of(proposals), StandardCharsets.UTF_8)) {
+                mismatches = indexer.verify(in);
+            }
+            System.out.println(mismatches == 0 ? "verified" : mismatches + " mismatches");
+            if (mismatches != 0) {
+                System.exit(1);
+            }
+        }
+    }
+}
@@ -0,0 +1,116 @@
+/*
+ * Copyright 2022 Craft Network
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package network.craft.indexer;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.Reader;
+import java.math.BigInteger;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Checks a {@link GovernanceIndex} against {@code getProposal} results read from the SCORE.
+ */
+public class ProposalVerifier {
+    private static final String[] STATUS_MSG = {"None", "Active", "Closed", "Canceled"};
+    private static final String[] TALLY_KEYS = {"_forVoices", "_againstVoices", "_abstainVoices"};
+
+    private final GovernanceIndex index;
+
+    public ProposalVerifier(GovernanceIndex index) {
+        this.index = index;
+    }
+
+    /**
+     * Compares one proposal with the index.
+     *
+     * @param proposal the result of {@code getProposal}, with numbers either as hex strings or as numbers
+     * @return the mismatches found, empty if the index agrees with the SCORE
+     */
+    @SuppressWarnings("unchecked")
+    public List<String> verify(Map<String, Object> proposal) {
+        var errors = new ArrayList<String>();
+        long pid = toBigInteger(proposal.get("_proposalId")).longValueExact();
+        if (!index.hasProposal(pid)) {
+            errors.add(pid + ": missing from the index");
+            return errors;
+        }
+        var creator = String.valueOf(proposal.get("_creator"));
+        if (!creator.equals(index.getCreator(pid))) {
+            errors.add(pid + ": creator " + index.getCreator(pid) + " != " + creator);
+        }
+        var status = String.valueOf(proposal.get("_status"));
+        var indexed = STATUS_MSG[index.getStatus(pid)];
+        // the SCORE reports Closed as soon as the voting period ends, before any ProposalClosed event
+        boolean closedOnRead = index.getStatus(pid) == GovernanceIndex.STATUS_ACTIVE && "Closed".equals(status);
+        if (!indexed.equals(status) && !closedOnRead) {
+            errors.add(pid + ": status " + indexed + " != " + status);
+        }
+        var tallies = (List<Object>) proposal.get("_tallies");
+        if (tallies != null) {
+            // a multi-choice proposal
+            for (int i = 0; i < tallies.size(); i++) {
+                var expected = toBigInteger(tallies.get(i));
+                var actual = index.getTally(pid, i);
+                if (!actual.equals(expected)) {
+                    errors.add(pid + ": _tallies[" + i + "] " + actual + " != " + expected);
+                }
+            }
+            return errors;
+        }
+        for (int i = 0; i < TALLY_KEYS.length; i++) {
+            var expected = toBigInteger(proposal.get(TALLY_KEYS[i]));
+            var actual = index.getTally(pid, i);
+            if (!actual.equals(expected)) {
+                errors.add(pid + ": " + TALLY_KEYS[i] + " " + actual + " != " + expected);
+            }
+        }
+        return errors;
+    }
+
+    /**
+     * Compares the proposals read from the given reader, one {@code getProposal} result per line.
+     *
+     * @return the mismatches found
+     */
+    @SuppressWarnings("unchecked")
+    public List<String> verify(Reader in) throws IOException {
+        var reader = new BufferedReader(in);
+        var errors = new ArrayList<String>();
+        for (String line = reader.readLine(); line != null; line = reader.readLine()) {
+            if (!line.isBlank()) {
+                errors.addAll(verify((Map<String, Object>) Json.parse(line)));
+            }
+        }
+        return errors;
+    }
+
+    private static BigInteger toBigInteger(Object value) {
+        if (value instanceof BigInteger) {
+            return (BigInteger) value;
+        }
+        if (value instanceof Number) {
+            return BigInteger.valueOf(((Number) value).longValue());
+        }
+        if (value == null) {
+            return BigInteger.ZERO;
+        }
+        return GovernanceIndex.parseBigInteger(value.toString());
+    }
+}
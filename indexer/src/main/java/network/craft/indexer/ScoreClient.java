@@ -0,0 +1,71 @@
+/*
+ * Copyright 2022 Craft Network
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package network.craft.indexer;
+
+import java.io.IOException;
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.util.Map;
+
+/**
+ * Calls the readonly methods of a SCORE through the {@code icx_call} JSON-RPC method of an ICON node.
+ */
+public class ScoreClient {
+    private final HttpClient http = HttpClient.newHttpClient();
+    private final URI endpoint;
+    private final String score;
+    private long requestId;
+
+    public ScoreClient(String endpoint, String score) {
+        this.endpoint = URI.create(endpoint);
+        this.score = score;
+    }
+
+    /**
+     * @param params the parameters, already in their RPC form: hex numbers, addresses or hex bytes
+     * @return the parsed result
+     */
+    @SuppressWarnings("unchecked")
+    public Object call(String method, Map<String, String> params) throws IOException {
+        var sb = new StringBuilder();
+        for (var e : params.entrySet()) {
+            sb.append(sb.length() == 0 ? "" : ",").append('"').append(e.getKey()).append("\":\"")
+                    .append(e.getValue()).append('"');
+        }
+        var body = String.format("{\"jsonrpc\":\"2.0\",\"id\":%d,\"method\":\"icx_call\",\"params\":"
+                        + "{\"to\":\"%s\",\"dataType\":\"call\",\"data\":{\"method\":\"%s\",\"params\":{%s}}}}",
+                ++requestId, score, method, sb);
+        var request = HttpRequest.newBuilder(endpoint)
+                .header("Content-Type", "application/json")
+                .POST(HttpRequest.BodyPublishers.ofString(body))
+                .build();
+        HttpResponse<String> response;
+        try {
+            response = http.send(request, HttpResponse.BodyHandlers.ofString());
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IOException("interrupted calling " + method, e);
+        }
+        var reply = (Map<String, Object>) Json.parse(response.body());
+        if (reply.containsKey("error")) {
+            throw new IOException(method + " failed: " + reply.get("error"));
+        }
+        return reply.get("result");
+    }
+}
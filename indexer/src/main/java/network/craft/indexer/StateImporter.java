@@ -0,0 +1,212 @@
+/*
+ * Copyright 2022 Craft Network
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package network.craft.indexer;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.math.BigInteger;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Rebuilds a {@link GovernanceIndex} from the pages of {@code exportState}, then checks it against {@code getProposal}.
+ *
+ * <pre>
+ * StateImporter --endpoint &lt;url&gt; --score &lt;address&gt; [--verify]
+ * StateImporter &lt;pages.jsonl&gt; [--proposals &lt;proposals.jsonl&gt;]
+ * </pre>
+ *
+ * With an endpoint, the pages are fetched from a node and {@code --verify} reads back every proposal.
+ * A page file holds one {@code exportState} result per line, in cursor order.
+ */
+public class StateImporter {
+    // the position of the whole tally in the rows of multi-choice proposals
+    private static final int MULTI_CHOICE_TALLY = 12;
+
+    private final GovernanceIndex index;
+    private Map<String, Object> config;
+    private int pageCount;
+    private long proposalCount;
+    private long voteCount;
+
+    public StateImporter(GovernanceIndex index) {
+        this.index = index;
+    }
+
+    public GovernanceIndex getIndex() {
+        return index;
+    }
+
+    public Map<String, Object> getConfig() {
+        return config;
+    }
+
+    public int getPageCount() {
+        return pageCount;
+    }
+
+    public long getProposalCount() {
+        return proposalCount;
+    }
+
+    public long getVoteCount() {
+        return voteCount;
+    }
+
+    /**
+     * Applies one page.
+     *
+     * @return the cursor of the next page, or null after the last page
+     */
+    @SuppressWarnings("unchecked")
+    public String apply(Map<String, Object> page) {
+        if (page.containsKey("_config")) {
+            config = (Map<String, Object>) page.get("_config");
+        }
+        for (var row : (List<List<Object>>) page.get("_proposals")) {
+            // multi-choice rows end with the whole tally, after the root
+            boolean multi = row.size() > MULTI_CHOICE_TALLY;
+            var values = multi ? (List<Object>) row.get(MULTI_CHOICE_TALLY) : row.subList(6, 9);
+            var tally = new BigInteger[values.size()];
+            for (int i = 0; i < tally.length; i++) {
+                tally[i] = GovernanceIndex.parseBigInteger((String) values.get(i));
+            }
+            index.restoreProposal(GovernanceIndex.parseLong((String) row.get(0)), (String) row.get(1),
+                    (int) GovernanceIndex.parseLong((String) row.get(2)), tally, multi,
+                    (int) GovernanceIndex.parseLong((String) row.get(9)));
+            proposalCount++;
+        }
+        for (var row : (List<List<Object>>) page.get("_votes")) {
+            index.restoreVote(GovernanceIndex.parseLong((String) row.get(0)), (String) row.get(1),
+                    GovernanceIndex.choiceOf((String) row.get(2)),
+                    GovernanceIndex.parseBigInteger((String) row.get(3)));
+            voteCount++;
+        }
+        pageCount++;
+        return (String) page.get("_cursor");
+    }
+
+    /**
+     * Fetches and applies every page.
+     */
+    @SuppressWarnings("unchecked")
+    public void fetch(ScoreClient client) throws IOException {
+        String cursor = null;
+        do {
+            var page = (Map<String, Object>) client.call("exportState", cursor == null ? Map.of() : Map.of("_cursor", cursor));
+            cursor = apply(page);
+        } while (cursor != null);
+    }
+
+    /**
+     * Applies the pages read from the given reader, one per line.
+     */
+    @SuppressWarnings("unchecked")
+    public void read(java.io.Reader in) throws IOException {
+        var reader = new BufferedReader(in);
+        String cursor = "";
+        for (String line = reader.readLine(); line != null; line = reader.readLine()) {
+            if (line.isBlank()) {
+                continue;
+            }
+            if (cursor == null) {
+                throw new IOException("page after the last one");
+            }
+            cursor = apply((Map<String, Object>) Json.parse(line));
+        }
+        if (cursor != null) {
+            throw new IOException("missing pages after " + pageCount);
+        }
+    }
+
+    /**
+     * Reads back every imported proposal with {@code getProposal} and compares it with the index.
+     *
+     * @return the mismatches found
+     */
+    @SuppressWarnings("unchecked")
+    public List<String> verify(ScoreClient client) throws IOException {
+        var verifier = new ProposalVerifier(index);
+        List<String> errors = new ArrayList<>();
+        for (long pid : index.getProposalIds()) {
+            var proposal = (Map<String, Object>) client.call("getProposal", Map.of("_proposalId", "0x" + Long.toHexString(pid)));
+            errors.addAll(verifier.verify(proposal));
+        }
+        return errors;
+    }
+
+    public static void main(String[] args) throws IOException {
+        String pages = null, proposals = null, endpoint = null, score = null;
+        boolean verify = false;
+        for (int i = 0; i < args.length; i++) {
+            switch (args[i]) {
+                case "--endpoint":
+                    endpoint = args[++i];
+                    break;
+                case "--score":
+                    score = args[++i];
+                    break;
+                case "--proposals":
+                    proposals = args[++i];
+                    break;
+                case "--verify":
+                    verify = true;
+                    break;
+                default:
+                    pages = args[i];
+            }
+        }
+        if ((pages == null) == (endpoint == null) || (endpoint != null && score == null)) {
+            System.err.println("usage: StateImporter --endpoint <url> --score <address> [--verify]");
+            System.err.println("       StateImporter <pages.jsonl> [--proposals <proposals.jsonl>]");
+            System.exit(2);
+        }
+
+        var importer = new StateImporter(new GovernanceIndex());
+        var client = endpoint != null ? new ScoreClient(endpoint, score) : null;
+        long start = System.nanoTime();
+        if (client != null) {
+            importer.fetch(client);
+        } else {
+            try (var in = Files.newBufferedReader(Path.of(pages), StandardCharsets.UTF_8)) {
+                importer.read(in);
+            }
+        }
+        System.out.printf("imported %d proposals and %d votes from %d pages in %.2fs%n", importer.getProposalCount(),
+                importer.getVoteCount(), importer.getPageCount(), (System.nanoTime() - start) / 1e9);
+
+        List<String> errors = null;
+        if (client != null && verify) {
+            errors = importer.verify(client);
+        } else if (proposals != null) {
+            try (var in = Files.newBufferedReader(Path.of(proposals), StandardCharsets.UTF_8)) {
+                errors = new ProposalVerifier(importer.getIndex()).verify(in);
+            }
+        }
+        if (errors != null) {
+            errors.forEach(System.err::println);
+            System.out.println(errors.isEmpty() ? "verified" : errors.size() + " mismatches");
+            if (!errors.isEmpty()) {
+                System.exit(1);
+            }
+        }
+    }
+}
@@ -0,0 +1,202 @@
+/*
+ * Copyright 2022 Craft Network
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package network.craft.indexer;
+
+import org.junit.jupiter.api.Test;
+
+import java.io.IOException;
+import java.io.StringReader;
+import java.math.BigInteger;
+import java.util.List;
+import java.util.Map;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class GovernanceIndexTest {
+    private static final String SCORE = "cx0000000000000000000000000000000000000001";
+    private static final String ALICE = "hx00000000000000000000000000000000000000a1";
+    private static final String BOB = "hx00000000000000000000000000000000000000b2";
+
+    private static String submitted(int pid, String creator) {
+        return String.format("{\"scoreAddress\":\"%s\",\"indexed\":[\"%s\",\"0x%x\"],\"data\":[\"%s\"]}",
+                SCORE, GovernanceIndex.PROPOSAL_SUBMITTED, pid, creator);
+    }
+
+    private static String voteCast(int pid, String voter, String vote, long power) {
+        return String.format("{\"scoreAddress\":\"%s\",\"indexed\":[\"%s\",\"0x%x\",\"%s\"],\"data\":[\"%s\",\"0x%x\"]}",
+                SCORE, GovernanceIndex.VOTE_CAST, pid, voter, vote, power);
+    }
+
+    private static String closed(int pid) {
+        return String.format("{\"scoreAddress\":\"%s\",\"indexed\":[\"%s\",\"0x%x\"],\"data\":[]}",
+                SCORE, GovernanceIndex.PROPOSAL_CLOSED, pid);
+    }
+
+    private static Indexer replay(String... lines) throws IOException {
+        var indexer = new Indexer(SCORE);
+        indexer.replay(new StringReader(String.join("\n", lines)));
+        return indexer;
+    }
+
+    @Test
+    void replay() throws IOException {
+        var index = replay(
+                submitted(1, ALICE),
+                submitted(2, BOB),
+                voteCast(1, ALICE, "for", 100),
+                voteCast(1, BOB, "against", 40),
+                // a changed vote moves the power instead of adding it again
+                voteCast(1, BOB, "abstain", 50),
+                voteCast(2, ALICE, "against", 7),
+                closed(1),
+                "{\"scoreAddress\":\"cx00000000000000000000000000000000000000ff\",\"indexed\":[\""
+                        + GovernanceIndex.VOTE_CAST + "\",\"0x1\",\"" + ALICE + "\"],\"data\":[\"for\",\"0x1\"]}"
+        ).getIndex();
+
+        assertEquals(7, index.getEventCount());
+        assertEquals(GovernanceIndex.STATUS_CLOSED, index.getStatus(1));
+        assertEquals(GovernanceIndex.STATUS_ACTIVE, index.getStatus(2));
+        assertEquals(ALICE, index.getCreator(1));
+        assertEquals(BigInteger.valueOf(100), index.getTally(1, 0));
+        assertEquals(BigInteger.ZERO, index.getTally(1, 1));
+        assertEquals(BigInteger.valueOf(50), index.getTally(1, 2));
+        assertEquals(2, index.getVoterCount(1));
+        assertEquals(3, index.getBallotCount());
+
+        assertArrayEquals(new Object[]{"abstain", BigInteger.valueOf(50)}, index.getVote(1, BOB));
+        assertNull(index.getVote(2, BOB));
+        assertArrayEquals(new long[]{2, 1}, index.getVotedProposals(ALICE));
+        assertArrayEquals(new long[]{1}, index.getVotedProposals(BOB));
+    }
+
+    @Test
+    void verify() throws IOException {
+        var indexer = replay(submitted(1, ALICE), voteCast(1, BOB, "for", 0x10));
+        var verifier = new ProposalVerifier(indexer.getIndex());
+
+        Map<String, Object> proposal = Map.of(
+                "_proposalId", "0x1",
+                "_creator", ALICE,
+                // closed on read once the voting period is over
+                "_status", "Closed",
+                "_forVoices", "0x10",
+                "_againstVoices", "0x0",
+                "_abstainVoices", "0x0");
+        assertTrue(verifier.verify(proposal).isEmpty());
+
+        var wrong = new java.util.HashMap<>(proposal);
+        wrong.put("_againstVoices", "0x1");
+        wrong.put("_status", "Canceled");
+        assertEquals(2, verifier.verify(wrong).size());
+
+        wrong.put("_proposalId", BigInteger.TWO);
+        assertEquals(List.of("2: missing from the index"), verifier.verify(wrong));
+        assertFalse(indexer.getIndex().hasProposal(2));
+    }
+
+    @Test
+    void importState() throws IOException {
+        var importer = new StateImporter(new GovernanceIndex());
+        var pages = String.join("\n",
+                "{\"_config\":{\"_lastProposalId\":\"0x2\"},\"_proposals\":[[\"0x1\",\"" + ALICE + "\",\"0x2\","
+                        + "\"0x5e3e9b8e3c000\",\"0x5e3ed7e7a8000\",\"Qm\",\"0x64\",\"0x28\",\"0x0\",\"0x3\",\"0x4\"]],"
+                        + "\"_votes\":[[\"0x1\",\"" + ALICE + "\",\"for\",\"0x64\"]],\"_cursor\":\"0xc20102\"}",
+                "{\"_proposals\":[],\"_votes\":[[\"0x1\",\"" + BOB + "\",\"against\",\"0x28\"]],\"_cursor\":\"0xc20201\"}",
+                "{\"_proposals\":[[\"0x2\",\"" + BOB + "\",\"0x1\",\"0x1\",\"0x2\",\"Qm\",\"0x0\",\"0x0\",\"0x0\",\"0x0\","
+                        + "\"0x0\",\"0x" + "ab".repeat(32) + "\"]],\"_votes\":[]}");
+        importer.read(new StringReader(pages));
+
+        var index = importer.getIndex();
+        assertEquals(3, importer.getPageCount());
+        assertEquals(2, importer.getProposalCount());
+        assertEquals(2, importer.getVoteCount());
+        assertEquals("0x2", importer.getConfig().get("_lastProposalId"));
+        assertEquals(GovernanceIndex.STATUS_CLOSED, index.getStatus(1));
+        assertEquals(BOB, index.getCreator(2));
+        // one voter of the first proposal is not in the export, but it is in the tally and count
+        assertEquals(3, index.getVoterCount(1));
+        assertEquals(BigInteger.valueOf(40), index.getTally(1, 1));
+        assertArrayEquals(new Object[]{"against", BigInteger.valueOf(40)}, index.getVote(1, BOB));
+        assertEquals(0, index.getEventCount());
+
+        var verifier = new ProposalVerifier(index);
+        var proposals = "{\"_proposalId\":\"0x1\",\"_creator\":\"" + ALICE + "\",\"_status\":\"Closed\","
+                + "\"_forVoices\":\"0x64\",\"_againstVoices\":\"0x28\",\"_abstainVoices\":\"0x0\"}\n"
+                + "{\"_proposalId\":\"0x2\",\"_creator\":\"" + BOB + "\",\"_status\":\"Active\","
+                + "\"_forVoices\":\"0x0\",\"_againstVoices\":\"0x0\",\"_abstainVoices\":\"0x0\"}";
+        assertEquals(List.of(), verifier.verify(new StringReader(proposals)));
+
+        // later events apply on top of the imported state
+        index.apply(EventLog.fromJson(voteCast(2, ALICE, "abstain", 7)));
+        assertEquals(BigInteger.valueOf(7), index.getTally(2, 2));
+
+        var truncated = new StateImporter(new GovernanceIndex());
+        assertThrows(IOException.class, () -> truncated.read(new StringReader(pages.substring(0, pages.indexOf('\n')))));
+    }
+
+    @Test
+    void multiChoice() throws IOException {
+        var index = replay(
+                submitted(1, ALICE),
+                voteCast(1, ALICE, "4", 100),
+                voteCast(1, BOB, "11", 40),
+                voteCast(1, BOB, "0", 30)
+        ).getIndex();
+        assertTrue(index.isMultiChoice(1));
+        assertEquals(BigInteger.valueOf(100), index.getTally(1, 4));
+        assertEquals(BigInteger.ZERO, index.getTally(1, 11));
+        assertEquals(BigInteger.valueOf(30), index.getTally(1, 0));
+        assertArrayEquals(new Object[]{"0", BigInteger.valueOf(30)}, index.getVote(1, BOB));
+        assertEquals(-1, GovernanceIndex.choiceOf("16"));
+        assertEquals(-1, GovernanceIndex.choiceOf("-1"));
+        assertEquals(GovernanceIndex.CHOICES.indexOf("against"), GovernanceIndex.choiceOf("against"));
+
+        // multi-choice rows end with the root, empty if none, and the whole tally
+        var importer = new StateImporter(new GovernanceIndex());
+        importer.read(new StringReader("{\"_proposals\":[[\"0x1\",\"" + ALICE + "\",\"0x1\",\"0x1\",\"0x2\",\"Qm\","
+                + "\"0x0\",\"0x0\",\"0x5\",\"0x2\",\"0x3\",\"0x\",[\"0x0\",\"0x0\",\"0x5\",\"0x0\",\"0x9\"]]],"
+                + "\"_votes\":[[\"0x1\",\"" + ALICE + "\",\"4\",\"0x9\"],[\"0x1\",\"" + BOB + "\",\"2\",\"0x5\"]]}"));
+        var imported = importer.getIndex();
+        assertTrue(imported.isMultiChoice(1));
+        assertEquals(BigInteger.valueOf(9), imported.getTally(1, 4));
+        assertArrayEquals(new Object[]{"4", BigInteger.valueOf(9)}, imported.getVote(1, ALICE));
+
+        var verifier = new ProposalVerifier(imported);
+        assertEquals(List.of(), verifier.verify(new StringReader("{\"_proposalId\":\"0x1\",\"_creator\":\"" + ALICE
+                + "\",\"_status\":\"Active\",\"_tallies\":[\"0x0\",\"0x0\",\"0x5\",\"0x0\",\"0x9\"]}")));
+        assertEquals(List.of("1: _tallies[1] 0 != 1"), verifier.verify(new StringReader("{\"_proposalId\":\"0x1\","
+                + "\"_creator\":\"" + ALICE + "\",\"_status\":\"Active\",\"_tallies\":[\"0x0\",\"0x1\"]}")));
+    }
+
+    @Test
+    void longIntMap() {
+        var map = new LongIntMap(4);
+        for (int i = 0; i < 10_000; i++) {
+            map.put((long) i << 32 | i, i);
+        }
+        assertEquals(10_000, map.size());
+        for (int i = 0; i < 10_000; i++) {
+            assertEquals(i, map.get((long) i << 32 | i));
+        }
+        assertEquals(-1, map.get(-1L));
+    }
+}
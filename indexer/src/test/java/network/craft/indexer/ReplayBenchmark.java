@@ -0,0 +1,69 @@
+/*
+ * Copyright 2022 Craft Network
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package network.craft.indexer;
+
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.util.Random;
+
+/**
+ * Measures the replay throughput of {@link Indexer} on a synthetic event log.
+ *
+ * <p>The log is generated with a fixed seed: one proposal per 1000 events, votes from a pool of
+ * 100k addresses, about one in ten of them changing an earlier vote.
+ */
+public class ReplayBenchmark {
+    private static final String SCORE = "cx0000000000000000000000000000000000000001";
+    private static final String[] CHOICES = {"for", "against", "abstain"};
+
+    public static void main(String[] args) throws IOException {
+        long count = args.length > 0 ? Long.parseLong(args[0]) : 5_000_000L;
+        var file = Files.createTempFile("agora-events", ".jsonl");
+        try {
+            var random = new Random(42);
+            long start = System.nanoTime();
+            try (BufferedWriter out = Files.newBufferedWriter(file, StandardCharsets.UTF_8)) {
+                int pid = 0;
+                for (long i = 0; i < count; i++) {
+                    if (i % 1000 == 0) {
+                        pid++;
+                        out.write(String.format("{\"scoreAddress\":\"%s\",\"indexed\":[\"%s\",\"0x%x\"],\"data\":[\"%s\"]}",
+                                SCORE, GovernanceIndex.PROPOSAL_SUBMITTED, pid, address(random.nextInt(100_000))));
+                    } else {
+                        // mostly the latest proposal, sometimes an older one still open
+                        int target = Math.max(1, pid - (random.nextInt(10) == 0 ? random.nextInt(5) : 0));
+                        out.write(String.format("{\"scoreAddress\":\"%s\",\"indexed\":[\"%s\",\"0x%x\",\"%s\"],\"data\":[\"%s\",\"0x%x\"]}",
+                                SCORE, GovernanceIndex.VOTE_CAST, target, address(random.nextInt(100_000)),
+                                CHOICES[random.nextInt(3)], 1 + (random.nextLong() >>> 1) % 1_000_000_000_000_000_000L));
+                    }
+                    out.newLine();
+                }
+            }
+            System.out.printf("generated %d events (%d MB) in %.2fs%n", count, Files.size(file) >> 20,
+                    (System.nanoTime() - start) / 1e9);
+            Indexer.main(new String[]{file.toString(), "--score", SCORE});
+        } finally {
+            Files.delete(file);
+        }
+    }
+
+    private static String address(int n) {
+        return String.format("hx%040x", n);
+    }
+}
@@ -0,0 +1,148 @@
+/*
+ * Copyright 2022 Craft Network
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package network.craft.bench;
+
+import network.craft.score.Proposal;
+import network.craft.score.ProposalInfo;
+import network.craft.score.ProposalState;
+import network.craft.score.TokenVote;
+import network.craft.score.Votes;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Encode and decode throughput of the storage records through {@link RlpnObjectWriter} and
+ * {@link RlpnObjectReader}. Each operation writes to a fresh writer, like a {@code VarDB.set}
+ * does on chain; run with {@code -prof gc} (the default) for the bytes allocated per operation.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+public class RecordCodecBenchmark {
+    private final Proposal[] proposals = new Proposal[Records.COUNT];
+    private final ProposalInfo[] infos = new ProposalInfo[Records.COUNT];
+    private final ProposalState[] states = new ProposalState[Records.COUNT];
+    private final Votes[] votes = new Votes[Records.COUNT];
+    private final TokenVote[] tokenVotes = new TokenVote[Records.COUNT];
+
+    private final byte[][] proposalBytes = new byte[Records.COUNT][];
+    private final byte[][] infoBytes = new byte[Records.COUNT][];
+    private final byte[][] stateBytes = new byte[Records.COUNT][];
+    private final byte[][] votesBytes = new byte[Records.COUNT][];
+    private final byte[][] tokenVoteBytes = new byte[Records.COUNT][];
+
+    private int next;
+
+    @Setup
+    public void setup() {
+        var records = new Records();
+        for (int i = 0; i < Records.COUNT; i++) {
+            proposals[i] = records.proposal();
+            infos[i] = records.info();
+            states[i] = records.state();
+            votes[i] = records.votes();
+            tokenVotes[i] = records.tokenVote();
+
+            var w = new RlpnObjectWriter();
+            Proposal.writeObject(w, proposals[i]);
+            proposalBytes[i] = w.toByteArray();
+            w = new RlpnObjectWriter();
+            ProposalInfo.writeObject(w, infos[i]);
+            infoBytes[i] = w.toByteArray();
+            w = new RlpnObjectWriter();
+            ProposalState.writeObject(w, states[i]);
+            stateBytes[i] = w.toByteArray();
+            w = new RlpnObjectWriter();
+            Votes.writeObject(w, votes[i]);
+            votesBytes[i] = w.toByteArray();
+            w = new RlpnObjectWriter();
+            TokenVote.writeObject(w, tokenVotes[i]);
+            tokenVoteBytes[i] = w.toByteArray();
+        }
+    }
+
+    private int index() {
+        return next = (next + 1) & Records.MASK;
+    }
+
+    @Benchmark
+    public byte[] encodeProposal() {
+        var w = new RlpnObjectWriter();
+        Proposal.writeObject(w, proposals[index()]);
+        return w.toByteArray();
+    }
+
+    @Benchmark
+    public Proposal decodeProposal() {
+        return Proposal.readObject(new RlpnObjectReader(proposalBytes[index()]));
+    }
+
+    @Benchmark
+    public byte[] encodeProposalInfo() {
+        var w = new RlpnObjectWriter();
+        ProposalInfo.writeObject(w, infos[index()]);
+        return w.toByteArray();
+    }
+
+    @Benchmark
+    public ProposalInfo decodeProposalInfo() {
+        return ProposalInfo.readObject(new RlpnObjectReader(infoBytes[index()]));
+    }
+
+    @Benchmark
+    public byte[] encodeProposalState() {
+        var w = new RlpnObjectWriter();
+        ProposalState.writeObject(w, states[index()]);
+        return w.toByteArray();
+    }
+
+    @Benchmark
+    public ProposalState decodeProposalState() {
+        return ProposalState.readObject(new RlpnObjectReader(stateBytes[index()]));
+    }
+
+    @Benchmark
+    public byte[] encodeVotes() {
+        var w = new RlpnObjectWriter();
+        Votes.writeObject(w, votes[index()]);
+        return w.toByteArray();
+    }
+
+    @Benchmark
+    public Votes decodeVotes() {
+        return Votes.readObject(new RlpnObjectReader(votesBytes[index()]));
+    }
+
+    @Benchmark
+    public byte[] encodeTokenVote() {
+        var w = new RlpnObjectWriter();
+        TokenVote.writeObject(w, tokenVotes[index()]);
+        return w.toByteArray();
+    }
+
+    @Benchmark
+    public TokenVote decodeTokenVote() {
+        return TokenVote.readObject(new RlpnObjectReader(tokenVoteBytes[index()]));
+    }
+}
@@ -0,0 +1,102 @@
+/*
+ * Copyright 2022 Craft Network
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package network.craft.bench;
+
+import network.craft.score.ProposalState;
+import network.craft.score.Votes;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+
+import java.math.BigInteger;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Tally arithmetic with 18-decimal balances: {@link Votes#increase} on the preset and on a tally of
+ * {@link Votes#MAX_CHOICES} choices, a changed vote that moves the power between choices, and the whole
+ * read-modify-write of a vote on the hot proposal state.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+public class TallyBenchmark {
+    private final BigInteger[] balances = new BigInteger[Records.COUNT];
+    private final int[] choices = new int[Records.COUNT];
+    private final int[] previous = new int[Records.COUNT];
+    private final int[] multiChoices = new int[Records.COUNT];
+    private Votes votes;
+    private Votes multiVotes;
+    private byte[] state;
+    private int next;
+
+    @Setup
+    public void setup() {
+        var records = new Records();
+        for (int i = 0; i < Records.COUNT; i++) {
+            balances[i] = records.balance();
+            choices[i] = Votes.choiceOf(records.choice());
+            previous[i] = Votes.choiceOf(records.choice());
+            multiChoices[i] = i % Votes.MAX_CHOICES;
+        }
+        votes = records.votes();
+        multiVotes = new Votes(Votes.MAX_CHOICES);
+        var w = new RlpnObjectWriter();
+        ProposalState.writeObject(w, records.state());
+        state = w.toByteArray();
+    }
+
+    private int index() {
+        return next = (next + 1) & Records.MASK;
+    }
+
+    @Benchmark
+    public Votes increase() {
+        int i = index();
+        votes.increase(choices[i], balances[i]);
+        return votes;
+    }
+
+    @Benchmark
+    public Votes increaseMultiChoice() {
+        int i = index();
+        multiVotes.increase(multiChoices[i], balances[i]);
+        return multiVotes;
+    }
+
+    @Benchmark
+    public Votes changeVote() {
+        int i = index();
+        votes.decrease(previous[i], balances[i]);
+        votes.increase(choices[i], balances[i]);
+        return votes;
+    }
+
+    @Benchmark
+    public byte[] castVote() {
+        int i = index();
+        var s = ProposalState.readObject(new RlpnObjectReader(state));
+        s.getVotes().increase(choices[i], balances[i]);
+        s.bumpVersion();
+        var w = new RlpnObjectWriter();
+        ProposalState.writeObject(w, s);
+        return w.toByteArray();
+    }
+}
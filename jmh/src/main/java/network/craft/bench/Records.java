@@ -0,0 +1,90 @@
+/*
+ * Copyright 2022 Craft Network
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package network.craft.bench;
+
+import network.craft.score.Proposal;
+import network.craft.score.ProposalInfo;
+import network.craft.score.ProposalState;
+import network.craft.score.TokenVote;
+import network.craft.score.Votes;
+import score.Address;
+
+import java.math.BigInteger;
+import java.util.Random;
+
+/**
+ * Seeded record fixtures with mainnet-like values: 18-decimal balances of up to a million tokens,
+ * tallies of up to a hundred million tokens and microsecond timestamps.
+ */
+final class Records {
+    static final int COUNT = 1024;
+    static final int MASK = COUNT - 1;
+    static final BigInteger ICX = BigInteger.TEN.pow(18);
+    static final String[] CHOICES = {"for", "against", "abstain"};
+    private static final long START = 1_660_000_000_000_000L;
+    private static final long DAY = 86_400_000_000L;
+    private static final String IPFS_HASH = "QmYwAPJzv5CZsnA625s3Xf2nemtYgPpHdWEz79ojWnPbdG";
+
+    private final Random random = new Random(42);
+
+    BigInteger balance() {
+        // whole tokens plus a wei remainder, so every value needs the full 18 decimals
+        var wei = BigInteger.valueOf(random.nextLong() >>> 1).mod(ICX);
+        return BigInteger.valueOf(1 + random.nextInt(1_000_000)).multiply(ICX).add(wei);
+    }
+
+    BigInteger tally() {
+        return random.nextInt(4) == 0 ? BigInteger.ZERO : balance().multiply(BigInteger.valueOf(1 + random.nextInt(100)));
+    }
+
+    Address address() {
+        var raw = new byte[21];
+        random.nextBytes(raw);
+        raw[0] = 0;
+        return new Address(raw);
+    }
+
+    String choice() {
+        return CHOICES[random.nextInt(CHOICES.length)];
+    }
+
+    Votes votes() {
+        return new Votes(tally(), tally(), tally());
+    }
+
+    Proposal proposal() {
+        long start = START + random.nextInt(365) * DAY;
+        return new Proposal(address(), start, start + (1 + random.nextInt(14)) * DAY, IPFS_HASH,
+                Proposal.STATUS_ACTIVE + random.nextInt(3));
+    }
+
+    ProposalInfo info() {
+        return new ProposalInfo(address(), START + random.nextInt(365) * DAY, IPFS_HASH);
+    }
+
+    ProposalState state() {
+        var state = new ProposalState(Proposal.STATUS_ACTIVE, START + random.nextInt(365) * DAY, votes());
+        for (int i = random.nextInt(1000); i > 0; i--) {
+            state.bumpVersion();
+        }
+        return state;
+    }
+
+    TokenVote tokenVote() {
+        return new TokenVote(choice(), balance());
+    }
+}
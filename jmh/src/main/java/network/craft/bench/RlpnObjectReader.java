@@ -0,0 +1,305 @@
+/*
+ * Copyright 2022 Craft Network
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package network.craft.bench;
+
+import score.Address;
+import score.ObjectReader;
+
+import java.lang.reflect.InvocationTargetException;
+import java.math.BigInteger;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+
+/**
+ * Local RLPn reader matching {@link RlpnObjectWriter}. Scalars are decoded in place; only
+ * byte arrays, strings, big integers and addresses allocate.
+ */
+public class RlpnObjectReader implements ObjectReader {
+    private final byte[] buf;
+    private int pos;
+    private int[] ends = new int[4];
+    private int depth;
+
+    // header of the item at pos, filled by header()
+    private int offset;
+    private int length;
+    private boolean list;
+
+    public RlpnObjectReader(byte[] buf) {
+        this.buf = buf;
+    }
+
+    private int limit() {
+        return depth == 0 ? buf.length : ends[depth - 1];
+    }
+
+    private int readLength(int p, int n) {
+        int len = 0;
+        for (int i = 0; i < n; i++) {
+            len = len << 8 | (buf[p + i] & 0xff);
+        }
+        return len;
+    }
+
+    private void header() {
+        if (pos >= limit()) {
+            throw new IllegalStateException("NoMoreItems");
+        }
+        int b = buf[pos] & 0xff;
+        if (b < 0x80) {
+            offset = pos;
+            length = 1;
+            list = false;
+        } else if (b <= 0xb7) {
+            offset = pos + 1;
+            length = b - 0x80;
+            list = false;
+        } else if (b < 0xc0) {
+            int n = b - 0xb7;
+            offset = pos + 1 + n;
+            length = readLength(pos + 1, n);
+            list = false;
+        } else if (b <= 0xf7) {
+            offset = pos + 1;
+            length = b - 0xc0;
+            list = true;
+        } else {
+            int n = b - 0xf7;
+            offset = pos + 1 + n;
+            length = readLength(pos + 1, n);
+            list = true;
+        }
+        if (offset + length > limit()) {
+            throw new IllegalStateException("InvalidLength");
+        }
+    }
+
+    private boolean atNull() {
+        return pos + 1 < limit() && (buf[pos] & 0xff) == 0xf8 && buf[pos + 1] == 0;
+    }
+
+    private void scalar() {
+        header();
+        if (list) {
+            throw new IllegalStateException("NotScalar");
+        }
+        pos = offset + length;
+    }
+
+    private long readLongValue() {
+        scalar();
+        if (length == 0) {
+            return 0;
+        }
+        if (length > 8) {
+            throw new IllegalStateException("OutOfRange");
+        }
+        long v = buf[offset];
+        for (int i = 1; i < length; i++) {
+            v = v << 8 | (buf[offset + i] & 0xff);
+        }
+        return v;
+    }
+
+    @Override
+    public boolean readBoolean() {
+        return readLongValue() != 0;
+    }
+
+    @Override
+    public byte readByte() {
+        return (byte) readLongValue();
+    }
+
+    @Override
+    public short readShort() {
+        return (short) readLongValue();
+    }
+
+    @Override
+    public char readChar() {
+        return (char) readLongValue();
+    }
+
+    @Override
+    public int readInt() {
+        return (int) readLongValue();
+    }
+
+    @Override
+    public float readFloat() {
+        return Float.intBitsToFloat((int) readLongValue());
+    }
+
+    @Override
+    public long readLong() {
+        return readLongValue();
+    }
+
+    @Override
+    public double readDouble() {
+        return Double.longBitsToDouble(readLongValue());
+    }
+
+    @Override
+    public BigInteger readBigInteger() {
+        scalar();
+        if (length == 0) {
+            return BigInteger.ZERO;
+        }
+        return new BigInteger(buf, offset, length);
+    }
+
+    @Override
+    public String readString() {
+        scalar();
+        return new String(buf, offset, length, StandardCharsets.UTF_8);
+    }
+
+    @Override
+    public byte[] readByteArray() {
+        scalar();
+        return Arrays.copyOfRange(buf, offset, offset + length);
+    }
+
+    @Override
+    public Address readAddress() {
+        return new Address(readByteArray());
+    }
+
+    @Override
+    @SuppressWarnings("unchecked")
+    public <T> T read(Class<T> c) {
+        Object v;
+        if (c == Boolean.class) {
+            v = readBoolean();
+        } else if (c == Byte.class) {
+            v = readByte();
+        } else if (c == Short.class) {
+            v = readShort();
+        } else if (c == Character.class) {
+            v = readChar();
+        } else if (c == Integer.class) {
+            v = readInt();
+        } else if (c == Float.class) {
+            v = readFloat();
+        } else if (c == Long.class) {
+            v = readLong();
+        } else if (c == Double.class) {
+            v = readDouble();
+        } else if (c == BigInteger.class) {
+            v = readBigInteger();
+        } else if (c == String.class) {
+            v = readString();
+        } else if (c == byte[].class) {
+            v = readByteArray();
+        } else if (c == Address.class) {
+            v = readAddress();
+        } else {
+            v = readCustom(c);
+        }
+        return (T) v;
+    }
+
+    private Object readCustom(Class<?> c) {
+        try {
+            return c.getMethod("readObject", ObjectReader.class).invoke(null, this);
+        } catch (NoSuchMethodException | IllegalAccessException e) {
+            throw new IllegalArgumentException("UnsupportedType: " + c.getName(), e);
+        } catch (InvocationTargetException e) {
+            throw new IllegalStateException(e.getCause());
+        }
+    }
+
+    @Override
+    public <T> T readOrDefault(Class<T> c, T def) {
+        return hasNext() ? read(c) : def;
+    }
+
+    @Override
+    public <T> T readNullable(Class<T> c) {
+        if (atNull()) {
+            pos += 2;
+            return null;
+        }
+        return read(c);
+    }
+
+    @Override
+    public <T> T readNullableOrDefault(Class<T> c, T def) {
+        return hasNext() ? readNullable(c) : def;
+    }
+
+    @Override
+    public void beginList() {
+        header();
+        if (!list) {
+            throw new IllegalStateException("NotList");
+        }
+        if (depth == ends.length) {
+            ends = Arrays.copyOf(ends, depth * 2);
+        }
+        ends[depth++] = offset + length;
+        pos = offset;
+    }
+
+    @Override
+    public boolean beginNullableList() {
+        if (atNull()) {
+            pos += 2;
+            return false;
+        }
+        beginList();
+        return true;
+    }
+
+    @Override
+    public void beginMap() {
+        beginList();
+    }
+
+    @Override
+    public boolean beginNullableMap() {
+        return beginNullableList();
+    }
+
+    @Override
+    public boolean hasNext() {
+        return pos < limit();
+    }
+
+    @Override
+    public void end() {
+        if (depth == 0) {
+            throw new IllegalStateException("NoOpenList");
+        }
+        pos = ends[--depth];
+    }
+
+    @Override
+    public void skip() {
+        header();
+        pos = offset + length;
+    }
+
+    @Override
+    public void skip(int count) {
+        for (int i = 0; i < count; i++) {
+            skip();
+        }
+    }
+}
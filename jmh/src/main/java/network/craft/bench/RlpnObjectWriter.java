@@ -0,0 +1,304 @@
+/*
+ * Copyright 2022 Craft Network
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package network.craft.bench;
+
+import score.Address;
+import score.ByteArrayObjectWriter;
+
+import java.lang.reflect.InvocationTargetException;
+import java.math.BigInteger;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+
+/**
+ * Local RLPn writer with the encoding of the on-chain {@code Context.newByteArrayObjectWriter("RLPn")}.
+ *
+ * <p>Integers are minimal two's complement, strings are UTF-8, an address is its 21 raw bytes and null
+ * is {@code 0xf8 0x00}. A list reserves a one-byte header and shifts its payload on {@link #end()} only
+ * when the payload is longer than 55 bytes. The proposal state and the vote records usually stay under that,
+ * but the proposal info, whose IPFS hash alone takes 47 bytes, and the state of a multi-choice proposal with
+ * large tallies go over it and are shifted once.
+ */
+public class RlpnObjectWriter implements ByteArrayObjectWriter {
+    private byte[] buf;
+    private int size;
+    private int[] lists = new int[4];
+    private int depth;
+
+    public RlpnObjectWriter() {
+        this(64);
+    }
+
+    public RlpnObjectWriter(int capacity) {
+        buf = new byte[capacity];
+    }
+
+    @Override
+    public byte[] toByteArray() {
+        if (depth != 0) {
+            throw new IllegalStateException("OpenList");
+        }
+        return Arrays.copyOf(buf, size);
+    }
+
+    private void ensure(int n) {
+        if (size + n > buf.length) {
+            buf = Arrays.copyOf(buf, Math.max(buf.length * 2, size + n));
+        }
+    }
+
+    private static int lengthOfLength(int len) {
+        return len < 0x100 ? 1 : len < 0x10000 ? 2 : len < 0x1000000 ? 3 : 4;
+    }
+
+    private void putLength(int pos, int len, int n) {
+        for (int i = n - 1; i >= 0; i--) {
+            buf[pos + i] = (byte) len;
+            len >>>= 8;
+        }
+    }
+
+    private void writeBytes(byte[] v) {
+        int len = v.length;
+        if (len == 1 && (v[0] & 0xff) < 0x80) {
+            ensure(1);
+            buf[size++] = v[0];
+        } else if (len <= 55) {
+            ensure(1 + len);
+            buf[size++] = (byte) (0x80 + len);
+            System.arraycopy(v, 0, buf, size, len);
+            size += len;
+        } else {
+            int n = lengthOfLength(len);
+            ensure(1 + n + len);
+            buf[size] = (byte) (0xb7 + n);
+            putLength(size + 1, len, n);
+            size += 1 + n;
+            System.arraycopy(v, 0, buf, size, len);
+            size += len;
+        }
+    }
+
+    private void writeLong(long v) {
+        if (v >= 0 && v < 0x80) {
+            ensure(1);
+            buf[size++] = (byte) v;
+            return;
+        }
+        // minimal two's complement, the same bytes as BigInteger.valueOf(v).toByteArray()
+        int n = 8;
+        while (n > 1 && (v >> ((n - 1) * 8 - 1)) == (v >> 63)) {
+            n--;
+        }
+        ensure(1 + n);
+        buf[size++] = (byte) (0x80 + n);
+        for (int i = n - 1; i >= 0; i--) {
+            buf[size + i] = (byte) v;
+            v >>= 8;
+        }
+        size += n;
+    }
+
+    @Override
+    public void write(boolean v) {
+        writeLong(v ? 1 : 0);
+    }
+
+    @Override
+    public void write(byte v) {
+        writeLong(v);
+    }
+
+    @Override
+    public void write(short v) {
+        writeLong(v);
+    }
+
+    @Override
+    public void write(char v) {
+        writeLong(v);
+    }
+
+    @Override
+    public void write(int v) {
+        writeLong(v);
+    }
+
+    @Override
+    public void write(float v) {
+        writeLong(Float.floatToRawIntBits(v));
+    }
+
+    @Override
+    public void write(long v) {
+        writeLong(v);
+    }
+
+    @Override
+    public void write(double v) {
+        writeLong(Double.doubleToRawLongBits(v));
+    }
+
+    @Override
+    public void write(BigInteger v) {
+        if (v.bitLength() < 63) {
+            writeLong(v.longValue());
+        } else {
+            writeBytes(v.toByteArray());
+        }
+    }
+
+    @Override
+    public void write(String v) {
+        writeBytes(v.getBytes(StandardCharsets.UTF_8));
+    }
+
+    @Override
+    public void write(byte[] v) {
+        writeBytes(v);
+    }
+
+    @Override
+    public void write(Address v) {
+        writeBytes(v.toByteArray());
+    }
+
+    @Override
+    public void write(Object v) {
+        if (v instanceof Boolean) {
+            write((boolean) (Boolean) v);
+        } else if (v instanceof Character) {
+            write((char) (Character) v);
+        } else if (v instanceof Float) {
+            write((float) (Float) v);
+        } else if (v instanceof Double) {
+            write((double) (Double) v);
+        } else if (v instanceof Byte || v instanceof Short || v instanceof Integer || v instanceof Long) {
+            writeLong(((Number) v).longValue());
+        } else if (v instanceof BigInteger) {
+            write((BigInteger) v);
+        } else if (v instanceof String) {
+            write((String) v);
+        } else if (v instanceof byte[]) {
+            write((byte[]) v);
+        } else if (v instanceof Address) {
+            write((Address) v);
+        } else if (v == null) {
+            throw new NullPointerException();
+        } else {
+            writeCustom(v);
+        }
+    }
+
+    private void writeCustom(Object v) {
+        try {
+            var m = v.getClass().getMethod("writeObject", score.ObjectWriter.class, v.getClass());
+            m.invoke(null, this, v);
+        } catch (NoSuchMethodException | IllegalAccessException e) {
+            throw new IllegalArgumentException("UnsupportedType: " + v.getClass().getName(), e);
+        } catch (InvocationTargetException e) {
+            throw new IllegalStateException(e.getCause());
+        }
+    }
+
+    @Override
+    public void writeNullable(Object v) {
+        if (v == null) {
+            writeNull();
+        } else {
+            write(v);
+        }
+    }
+
+    @Override
+    public void write(Object... v) {
+        for (Object o : v) {
+            write(o);
+        }
+    }
+
+    @Override
+    public void writeNullable(Object... v) {
+        for (Object o : v) {
+            writeNullable(o);
+        }
+    }
+
+    @Override
+    public void beginList(int l) {
+        if (depth == lists.length) {
+            lists = Arrays.copyOf(lists, depth * 2);
+        }
+        ensure(1);
+        lists[depth++] = size++;
+    }
+
+    @Override
+    public void beginNullableList(int l) {
+        beginList(l);
+    }
+
+    @Override
+    public void writeListOf(Object... v) {
+        beginList(v.length);
+        write(v);
+        end();
+    }
+
+    @Override
+    public void writeListOfNullable(Object... v) {
+        beginList(v.length);
+        writeNullable(v);
+        end();
+    }
+
+    @Override
+    public void beginMap(int l) {
+        beginList(l * 2);
+    }
+
+    @Override
+    public void beginNullableMap(int l) {
+        beginMap(l);
+    }
+
+    @Override
+    public void writeNull() {
+        ensure(2);
+        buf[size++] = (byte) 0xf8;
+        buf[size++] = 0;
+    }
+
+    @Override
+    public void end() {
+        if (depth == 0) {
+            throw new IllegalStateException("NoOpenList");
+        }
+        int start = lists[--depth];
+        int len = size - start - 1;
+        if (len <= 55) {
+            buf[start] = (byte) (0xc0 + len);
+            return;
+        }
+        int n = lengthOfLength(len);
+        ensure(n);
+        System.arraycopy(buf, start + 1, buf, start + 1 + n, len);
+        buf[start] = (byte) (0xf7 + n);
+        putLength(start + 1, len, n);
+        size += n;
+    }
+}
@@ -0,0 +1,169 @@
+/*
+ * Copyright 2022 Craft Network
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package network.craft.bench;
+
+import network.craft.score.Proposal;
+import network.craft.score.ProposalInfo;
+import network.craft.score.ProposalState;
+import network.craft.score.TokenVote;
+import network.craft.score.Votes;
+import org.junit.jupiter.api.Test;
+import score.Address;
+
+import java.math.BigInteger;
+import java.util.Arrays;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class RlpnCodecTest {
+    private static final BigInteger BALANCE = new BigInteger("1234567890123456789012");
+
+    private static byte[] bytes(int... v) {
+        var b = new byte[v.length];
+        for (int i = 0; i < v.length; i++) {
+            b[i] = (byte) v[i];
+        }
+        return b;
+    }
+
+    private static byte[] encode(Object... v) {
+        var w = new RlpnObjectWriter(1);
+        w.write(v);
+        return w.toByteArray();
+    }
+
+    @Test
+    void encoding() {
+        assertArrayEquals(bytes(0x00), encode(0));
+        assertArrayEquals(bytes(0x7f), encode(127L));
+        assertArrayEquals(bytes(0x82, 0x00, 0x80), encode(128));
+        assertArrayEquals(bytes(0x82, 0x04, 0x00), encode(BigInteger.valueOf(1024)));
+        assertArrayEquals(bytes(0x81, 0xff), encode(-1));
+        assertArrayEquals(bytes(0x83, 'd', 'o', 'g'), encode("dog"));
+        assertArrayEquals(bytes(0x80), encode(""));
+        var n = new RlpnObjectWriter();
+        n.writeNull();
+        assertArrayEquals(bytes(0xf8, 0x00), n.toByteArray());
+
+        var w = new RlpnObjectWriter();
+        w.writeListOf("cat", "dog");
+        assertArrayEquals(bytes(0xc8, 0x83, 'c', 'a', 't', 0x83, 'd', 'o', 'g'), w.toByteArray());
+
+        var s = "Lorem ipsum dolor sit amet, consectetur adipisicing elit";
+        var encoded = encode(s);
+        assertEquals(0xb8, encoded[0] & 0xff);
+        assertEquals(56, encoded[1]);
+
+        // integers use the same bytes as BigInteger.toByteArray, whichever write was used
+        long[] samples = {255, 256, -128, -129, 1L << 40, Long.MIN_VALUE, Long.MAX_VALUE};
+        for (long v : samples) {
+            var big = BigInteger.valueOf(v).toByteArray();
+            var expected = new byte[big.length + 1];
+            expected[0] = (byte) (0x80 + big.length);
+            System.arraycopy(big, 0, expected, 1, big.length);
+            assertArrayEquals(expected, encode(v));
+            assertArrayEquals(expected, encode(BigInteger.valueOf(v)));
+            assertEquals(v, new RlpnObjectReader(expected).readLong());
+        }
+    }
+
+    @Test
+    void nesting() {
+        var payload = new byte[60];
+        Arrays.fill(payload, (byte) 7);
+        var w = new RlpnObjectWriter(4);
+        w.beginList(3);
+        w.beginList(1);
+        w.write(payload);
+        w.end();
+        w.writeNull();
+        w.write(BALANCE);
+        w.end();
+        var encoded = w.toByteArray();
+        assertEquals(0xf8, encoded[0] & 0xff);
+        assertEquals(encoded.length - 2, encoded[1] & 0xff);
+
+        var r = new RlpnObjectReader(encoded);
+        r.beginList();
+        r.beginList();
+        assertArrayEquals(payload, r.readByteArray());
+        assertFalse(r.hasNext());
+        r.end();
+        assertNull(r.readNullable(BigInteger.class));
+        assertEquals(BALANCE, r.read(BigInteger.class));
+        assertFalse(r.hasNext());
+        r.end();
+        assertFalse(r.hasNext());
+
+        r = new RlpnObjectReader(encoded);
+        r.beginList();
+        r.skip(2);
+        assertEquals(BALANCE, r.readBigInteger());
+        r.end();
+    }
+
+    @Test
+    void records() {
+        var records = new Records();
+        for (int i = 0; i < 100; i++) {
+            var p = records.proposal();
+            var w = new RlpnObjectWriter();
+            Proposal.writeObject(w, p);
+            var dp = Proposal.readObject(new RlpnObjectReader(w.toByteArray()));
+            assertEquals(p.getCreator(), dp.getCreator());
+            assertEquals(p.getStartTime(), dp.getStartTime());
+            assertEquals(p.getEndTime(), dp.getEndTime());
+            assertEquals(p.getStatus(), dp.getStatus());
+
+            var info = records.info();
+            w = new RlpnObjectWriter();
+            ProposalInfo.writeObject(w, info);
+            var di = ProposalInfo.readObject(new RlpnObjectReader(w.toByteArray()));
+            assertEquals(info.getCreator(), di.getCreator());
+            assertEquals(info.getIpfsHash(), di.getIpfsHash());
+
+            var s = records.state();
+            w = new RlpnObjectWriter();
+            ProposalState.writeObject(w, s);
+            var ds = ProposalState.readObject(new RlpnObjectReader(w.toByteArray()));
+            assertEquals(s.getEndTime(), ds.getEndTime());
+            assertEquals(s.getVersion(), ds.getVersion());
+            assertEquals(s.getVotes().getFor(), ds.getVotes().getFor());
+            assertEquals(s.getVotes().getAgainst(), ds.getVotes().getAgainst());
+            assertEquals(s.getVotes().getAbstain(), ds.getVotes().getAbstain());
+
+            var tv = records.tokenVote();
+            w = new RlpnObjectWriter();
+            w.write(tv);
+            var dv = new RlpnObjectReader(w.toByteArray()).read(TokenVote.class);
+            assertEquals(tv.getChoice(), dv.getChoice());
+            assertEquals(tv.getAmount(), dv.getAmount());
+            assertTrue(tv.getAmount().signum() > 0);
+        }
+
+        var votes = new Votes();
+        var w = new RlpnObjectWriter();
+        Votes.writeObject(w, votes);
+        assertArrayEquals(bytes(0xc0), w.toByteArray());
+        var address = records.address();
+        assertEquals(address, new RlpnObjectReader(encode(address)).readAddress());
+    }
+}